@@ -42,11 +42,39 @@ public class DatabaseInitializer implements CommandLineRunner {
                 }
             } catch (Exception e) {
                 log.info("tutorial_schema table missing or seeding failed, creating...");
-                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS tutorial_schema (id INT PRIMARY KEY AUTO_INCREMENT, level_id INT NOT NULL DEFAULT 0, schema_info TEXT NOT NULL)");
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS tutorial_schema (id INT PRIMARY KEY AUTO_INCREMENT, level_id INT NOT NULL DEFAULT 0, schema_info TEXT NOT NULL, change_version BIGINT NOT NULL DEFAULT 0)");
                 jdbcTemplate.execute("INSERT INTO tutorial_schema (level_id, schema_info) VALUES (0, 'Student Database Schema:\\n• Student (student_id INT PRIMARY KEY, name VARCHAR(50), age INT CHECK (age > 0), department VARCHAR(20), marks INT DEFAULT 0)')");
                 log.info("tutorial_schema table created and seeded!");
             }
             
+            try {
+                jdbcTemplate.execute("ALTER TABLE tutorial_schema ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT 0");
+            } catch (Exception e) {
+                log.debug("tutorial_schema.change_version not added: {}", e.getMessage());
+            }
+            
+            // Query history lives in Flyway V1 and V8 on MySQL; create it where migrations are off (H2)
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS query_executions (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL, problem_id BIGINT, challenge_id BIGINT, " +
+                    "query TEXT NOT NULL, status VARCHAR(20) NOT NULL, error_message TEXT, result_rows INTEGER, " +
+                    "execution_time_ms BIGINT NOT NULL, created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            
+            // Progress tables come from Flyway V1 and V5 on MySQL
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_progress (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL UNIQUE, " +
+                    "total_problems_completed INTEGER DEFAULT 0, total_challenges_completed INTEGER DEFAULT 0, " +
+                    "current_stage_id BIGINT, total_execution_time_ms BIGINT DEFAULT 0, last_activity_at TIMESTAMP, " +
+                    "created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                    "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS user_challenge_completions (" +
+                    "user_id BIGINT NOT NULL, challenge_id BIGINT NOT NULL, " +
+                    "completed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (user_id, challenge_id))");
+            
+            // Refresh-token revocations come from Flyway V7 on MySQL
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS revoked_refresh_tokens (" +
+                    "jti VARCHAR(64) NOT NULL PRIMARY KEY, expires_at TIMESTAMP NOT NULL, " +
+                    "revoked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+            
             // Check if challenges table exists and has data
             boolean tablesExist = false;
             try {
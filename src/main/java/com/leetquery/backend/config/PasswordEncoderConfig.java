@@ -1,5 +1,8 @@
 package com.leetquery.backend.config;
 
+import com.leetquery.backend.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -15,9 +18,14 @@ public class PasswordEncoderConfig {
     /**
      * Create BCryptPasswordEncoder bean
      * Strength: 12 (balance between security and performance)
+     * Hashing runs on its own bounded pool so sign-in bursts cannot take every request thread
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${app.security.hashing.threads:4}") int threads,
+                                           @Value("${app.security.hashing.queue-capacity:32}") int queueCapacity,
+                                           @Value("${app.security.hashing.wait-ms:10000}") long waitMs) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(12), threads, queueCapacity, waitMs,
+                meterRegistry);
     }
 }
@@ -0,0 +1,34 @@
+package com.leetquery.backend.config;
+
+import com.leetquery.backend.model.QueryBudget;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Query budget configuration (app.query.budget.*)
+ * Defaults apply unless a user tier or challenge type overrides a limit
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.query.budget")
+public class QueryBudgetProperties {
+
+    /**
+     * Limits used when neither the tier nor the challenge type sets one
+     */
+    private QueryBudget defaults = new QueryBudget(5000L, 1000, 1_048_576L);
+
+    /**
+     * Limits per user tier: anonymous, user, admin
+     */
+    private Map<String, QueryBudget> tiers = new HashMap<>();
+
+    /**
+     * Limits per challenge type: DQL, DML, DDL, TCL, DCL
+     */
+    private Map<String, QueryBudget> challengeTypes = new HashMap<>();
+}
@@ -1,47 +1,125 @@
 package com.leetquery.backend.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Bucket4j;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Rate Limiting Configuration using Bucket4j
  * Implements token bucket algorithm for rate limiting
+ *
+ * Each client gets one bucket per tier. Buckets live in a bounded Caffeine cache and are dropped
+ * after idle-expiry-minutes without a request; by then a bucket has refilled completely, so
+ * forgetting it changes nothing. When the cache is full the least useful buckets go first, so a
+ * flood of made-up client keys cannot grow memory.
  */
 @Configuration
 public class RateLimitConfig {
-    
+
     /**
-     * In-memory bucket cache for rate limiting
-     * In production, consider using distributed cache (Redis)
+     * Default rate limit: 1000 requests per hour
      */
-    private static final Map<String, Bucket> cache = new ConcurrentHashMap<>();
-    
+    public static final int DEFAULT_REQUESTS_PER_HOUR = 1000;
+
     /**
-     * Get or create a bucket for a given key (typically IP address or user ID)
-     * Default: 100 requests per minute
+     * Strict rate limit for sensitive endpoints: 10 requests per minute
      */
-    public static Bucket resolveBucket(String key) {
-        return cache.computeIfAbsent(key, k -> createNewBucket());
+    public static final int STRICT_REQUESTS_PER_MINUTE = 10;
+
+    /**
+     * Query execution rate limit: 50 requests per minute
+     */
+    public static final int QUERY_REQUESTS_PER_MINUTE = 50;
+
+    /**
+     * Rate limit tiers, from strictest to most lenient
+     */
+    public enum Tier {
+        /** Sign-in, sign-up and token refresh */
+        AUTH,
+        /** Query execution and grading */
+        QUERY,
+        /** Everything not covered by another tier */
+        DEFAULT,
+        /** Read-only catalog, search and leaderboard lookups */
+        CATALOG
     }
-    
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rate-limit.auth.requests-per-minute:" + STRICT_REQUESTS_PER_MINUTE + "}")
+    private int authRequestsPerMinute;
+
+    @Value("${app.rate-limit.query.requests-per-minute:" + QUERY_REQUESTS_PER_MINUTE + "}")
+    private int queryRequestsPerMinute;
+
+    @Value("${app.rate-limit.default.requests-per-minute:100}")
+    private int defaultRequestsPerMinute;
+
+    @Value("${app.rate-limit.catalog.requests-per-minute:300}")
+    private int catalogRequestsPerMinute;
+
+    @Value("${app.rate-limit.buckets.max-size:100000}")
+    private long maxBuckets;
+
+    @Value("${app.rate-limit.buckets.idle-expiry-minutes:10}")
+    private long idleExpiryMinutes;
+
+    private final Map<Tier, Integer> requestsPerMinute = new EnumMap<>(Tier.class);
+
     /**
-     * Create a new bucket with default limits
-     * 100 tokens per minute (refill at rate of 100 tokens per 60 seconds)
+     * In-memory bucket cache for rate limiting, keyed by tier and client
+     * In production, consider using distributed cache (Redis)
      */
-    private static Bucket createNewBucket() {
-        Bandwidth limit = Bandwidth.classic(100, Refill.intervally(100, Duration.ofMinutes(1)));
-        return Bucket4j.builder()
-                .addLimit(limit)
+    private Cache<String, Bucket> cache;
+
+    @PostConstruct
+    public void init() {
+        requestsPerMinute.put(Tier.AUTH, authRequestsPerMinute);
+        requestsPerMinute.put(Tier.QUERY, queryRequestsPerMinute);
+        requestsPerMinute.put(Tier.DEFAULT, defaultRequestsPerMinute);
+        requestsPerMinute.put(Tier.CATALOG, catalogRequestsPerMinute);
+
+        // A bucket idle for a whole refill period is full again, so it may as well be forgotten
+        Duration idle = Duration.ofMinutes(Math.max(1, idleExpiryMinutes));
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(idle)
+                .recordStats()
                 .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rateLimitBuckets");
     }
-    
+
+    /**
+     * Get or create the bucket of a client (user ID or IP address) in a tier
+     */
+    public Bucket resolveBucket(Tier tier, String key) {
+        return cache.get(tier.name() + ':' + key,
+                k -> createBucket(requestsPerMinute.get(tier), Duration.ofMinutes(1)));
+    }
+
+    /**
+     * Number of buckets currently held
+     */
+    public long bucketCount() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
     /**
      * Create a bucket with custom limits
      */
@@ -51,19 +129,4 @@ public class RateLimitConfig {
                 .addLimit(limit)
                 .build();
     }
-    
-    /**
-     * Default rate limit: 1000 requests per hour
-     */
-    public static final int DEFAULT_REQUESTS_PER_HOUR = 1000;
-    
-    /**
-     * Strict rate limit for sensitive endpoints: 10 requests per minute
-     */
-    public static final int STRICT_REQUESTS_PER_MINUTE = 10;
-    
-    /**
-     * Query execution rate limit: 50 requests per minute
-     */
-    public static final int QUERY_REQUESTS_PER_MINUTE = 50;
 }
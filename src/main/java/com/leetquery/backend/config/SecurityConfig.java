@@ -88,7 +88,9 @@ public class SecurityConfig {
                         .requestMatchers("/swagger-ui/**").permitAll()
                         .requestMatchers("/api-docs/**").permitAll()
                         .requestMatchers("/health").permitAll()
-                        .requestMatchers("/actuator/**").permitAll()
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        // Metrics describe the server's internals, so they are for admins only
+                        .requestMatchers("/actuator/**").hasRole("ADMIN")
                         
                         // GET endpoints - typically public
                         .requestMatchers(HttpMethod.GET, "/api/problems").permitAll()
@@ -43,7 +43,8 @@ public class WebConfig implements WebMvcConfigurer {
                 // Exposed headers for client access
                 .exposedHeaders(
                         HttpHeaders.AUTHORIZATION,
-                        "X-Total-Count"  // For pagination
+                        "X-Total-Count",  // For pagination
+                        "X-Next-Cursor"   // after= value for the next page of catalog listings
                 )
                 // Cache preflight requests for 1 hour
                 .maxAge(3600);
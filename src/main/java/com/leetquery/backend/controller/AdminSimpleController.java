@@ -1,15 +1,26 @@
 package com.leetquery.backend.controller;
 
+import com.leetquery.backend.exception.ValidationException;
 import com.leetquery.backend.model.AddProblemRequest;
+import com.leetquery.backend.model.QueryProfile;
+import com.leetquery.backend.model.Stage;
+import com.leetquery.backend.service.BulkImportService;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.ExpectedQueryProfiler;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
 import java.util.HashMap;
@@ -21,13 +32,18 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AdminSimpleController {
 
+    private static final String ADMIN_PASSWORD = "siva_yesh";
+
     private final JdbcTemplate jdbcTemplate;
+    private final CatalogService catalogService;
+    private final BulkImportService bulkImportService;
+    private final ExpectedQueryProfiler expectedQueryProfiler;
 
     @PostMapping("/verify")
     public ResponseEntity<Map<String, Boolean>> verifyPassword(@RequestBody PasswordRequest request) {
         Map<String, Boolean> response = new HashMap<>();
         
-        if ("siva_yesh".equals(request.getPassword())) {
+        if (ADMIN_PASSWORD.equals(request.getPassword())) {
             response.put("valid", true);
         } else {
             response.put("valid", false);
@@ -39,35 +55,51 @@ public class AdminSimpleController {
     @PostMapping("/addProblem")
     public ResponseEntity<?> addProblem(@RequestBody AddProblemRequest request) {
         // Check password
-        if (!"siva_yesh".equals(request.getPassword())) {
+        if (!ADMIN_PASSWORD.equals(request.getPassword())) {
             Map<String, String> error = new HashMap<>();
             error.put("error", "Unauthorized");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
         }
 
         try {
-            // Query stage ID by order_no
-            Integer stageId = jdbcTemplate.queryForObject(
-                "SELECT id FROM stages WHERE order_no = ?",
-                Integer.class,
-                request.getStageOrder()
-            );
+            // Look up the stage by order_no
+            Stage stage = catalogService.snapshot().getStageByOrderNo(request.getStageOrder());
 
-            if (stageId == null) {
+            if (stage == null) {
                 Map<String, String> error = new HashMap<>();
                 error.put("error", "Stage not found for order_no: " + request.getStageOrder());
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
             }
 
+            // Run the expected query once; broken or slow ones are refused
+            QueryProfile profile;
+            try {
+                profile = expectedQueryProfiler.profile(request.getExpectedQuery());
+            } catch (ValidationException e) {
+                Map<String, String> error = new HashMap<>();
+                error.put("success", "false");
+                error.put("error", e.getMessage());
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+            }
+
             // Insert problem
             jdbcTemplate.update(
-                "INSERT INTO problems (stage_id, title, description, expected_query) VALUES (?, ?, ?, ?)",
-                stageId,
+                "INSERT INTO problems (stage_id, title, description, expected_query, expected_row_count, " +
+                "expected_fingerprint, expected_columns, expected_execution_ms, change_version) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                stage.getId(),
                 request.getTitle(),
                 request.getDescription(),
-                request.getExpectedQuery()
+                request.getExpectedQuery(),
+                profile != null ? profile.getRowCount() : null,
+                profile != null ? profile.getFingerprint() : null,
+                profile != null ? profile.getColumns() : null,
+                profile != null ? profile.getExecutionMs() : null,
+                catalogService.nextChangeVersion()
             );
 
+            catalogService.refresh();
+
             // Return success response
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -82,6 +114,48 @@ public class AdminSimpleController {
         }
     }
 
+    /**
+     * Bulk import of problems or challenges from a JSON array or CSV request body.
+     * The upload is never buffered whole; rows are parsed and inserted as they arrive.
+     */
+    @PostMapping(value = "/import/{type}", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importRows(@PathVariable String type,
+                                        @RequestHeader(value = "X-Admin-Password", required = false) String password,
+                                        @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                        InputStream body) throws IOException {
+        if (!ADMIN_PASSWORD.equals(password)) {
+            return unauthorized();
+        }
+        // Partial loads are committed too, so row errors are reported in a 200 response
+        return ResponseEntity.ok(bulkImportService.importRows(type, body, contentType));
+    }
+
+    /**
+     * Same import from a multipart form with the upload in a "file" part
+     */
+    @PostMapping(value = "/import/{type}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importFile(@PathVariable String type,
+                                        @RequestHeader(value = "X-Admin-Password", required = false) String password,
+                                        @RequestParam("file") MultipartFile file) throws IOException {
+        if (!ADMIN_PASSWORD.equals(password)) {
+            return unauthorized();
+        }
+        String contentType = file.getContentType();
+        String filename = file.getOriginalFilename();
+        if (filename != null && filename.regionMatches(true, filename.length() - 4, ".csv", 0, 4)) {
+            contentType = "text/csv";
+        }
+        try (InputStream in = file.getInputStream()) {
+            return ResponseEntity.ok(bulkImportService.importRows(type, in, contentType));
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> unauthorized() {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Unauthorized");
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+    }
+
     @Data
     public static class PasswordRequest {
         private String password;
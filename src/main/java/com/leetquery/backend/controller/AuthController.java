@@ -2,11 +2,14 @@ package com.leetquery.backend.controller;
 
 import com.leetquery.backend.dto.AuthResponse;
 import com.leetquery.backend.dto.LoginRequest;
+import com.leetquery.backend.dto.LogoutRequest;
 import com.leetquery.backend.dto.RegisterRequest;
+import com.leetquery.backend.exception.ServiceBusyException;
 import com.leetquery.backend.service.AuthenticationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -37,6 +40,8 @@ public class AuthController {
             logger.info("Register request for email: {}", registerRequest.getEmail());
             AuthResponse authResponse = authenticationService.register(registerRequest);
             return ResponseEntity.status(HttpStatus.CREATED).body(authResponse);
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             logger.error("Registration failed: {}", e.getMessage());
             return ResponseEntity.badRequest().body(new ErrorMessageResponse(e.getMessage()));
@@ -54,6 +59,8 @@ public class AuthController {
             logger.info("Login request for: {}", loginRequest.getUsername());
             AuthResponse authResponse = authenticationService.login(loginRequest);
             return ResponseEntity.ok(authResponse);
+        } catch (ServiceBusyException e) {
+            return busy(e);
         } catch (Exception e) {
             logger.warn("Login failed for user: {}", loginRequest.getUsername());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -91,13 +98,15 @@ public class AuthController {
     }
 
     /**
-     * Logout Endpoint (client-side only)
+     * Logout Endpoint
      * POST /auth/logout
+     * Optional request body: LogoutRequest (refreshToken), which is revoked
      * Instructs client to discard JWT token
      */
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
+    public ResponseEntity<?> logout(@RequestBody(required = false) LogoutRequest logoutRequest) {
         logger.info("Logout request");
+        authenticationService.logout(logoutRequest != null ? logoutRequest.getRefreshToken() : null);
         return ResponseEntity.ok(new MessageResponse("Logged out successfully. Please discard your token."));
     }
 
@@ -118,6 +127,16 @@ public class AuthController {
         }
     }
 
+    /**
+     * 503 for a request turned away because password hashing is saturated
+     */
+    private ResponseEntity<?> busy(ServiceBusyException e) {
+        logger.warn("Password hashing busy: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorMessageResponse(e.getMessage()));
+    }
+
     /**
      * Inner class for error message response
      */
@@ -0,0 +1,25 @@
+package com.leetquery.backend.controller;
+
+import com.leetquery.backend.model.CatalogChanges;
+import com.leetquery.backend.service.CatalogChangeLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/catalog")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class CatalogController {
+
+    private final CatalogChangeLog catalogChangeLog;
+
+    /**
+     * Stages, problems, challenges and schemas inserted, updated or deleted after version since;
+     * without since, every row. Send the returned version as since next time.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<CatalogChanges> changes(@RequestParam(required = false) Long since) {
+        return ResponseEntity.ok(catalogChangeLog.changesSince(since));
+    }
+}
@@ -0,0 +1,125 @@
+package com.leetquery.backend.controller;
+
+import com.leetquery.backend.dto.ProblemResponse;
+import com.leetquery.backend.dto.StageResponse;
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.Problem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The fields= projection of a catalog listing: which properties of each row are written out.
+ * Only the listed properties can be selected, and they are always written in declaration order.
+ */
+final class CatalogProjection<T> {
+
+    static final CatalogProjection<Problem> PROBLEM = fields(Map.of(
+            "id", Problem::getId,
+            "stageId", Problem::getStageId,
+            "title", Problem::getTitle,
+            "description", Problem::getDescription,
+            "expectedQuery", Problem::getExpectedQuery,
+            "expectedRowCount", Problem::getExpectedRowCount,
+            "expectedFingerprint", Problem::getExpectedFingerprint,
+            "expectedColumns", Problem::getExpectedColumns,
+            "expectedExecutionMs", Problem::getExpectedExecutionMs),
+            List.of("id", "stageId", "title", "description", "expectedQuery", "expectedRowCount",
+                    "expectedFingerprint", "expectedColumns", "expectedExecutionMs"));
+
+    static final CatalogProjection<ProblemResponse> PROBLEM_SUMMARY = fields(Map.of(
+            "id", ProblemResponse::getId,
+            "title", ProblemResponse::getTitle,
+            "description", ProblemResponse::getDescription),
+            List.of("id", "title", "description"));
+
+    static final CatalogProjection<Challenge> CHALLENGE = fields(Map.of(
+            "id", Challenge::getId,
+            "stageNumber", Challenge::getStageNumber,
+            "stageTitle", Challenge::getStageTitle,
+            "difficulty", Challenge::getDifficulty,
+            "description", Challenge::getDescription,
+            "expectedQuery", Challenge::getExpectedQuery,
+            "hint", Challenge::getHint,
+            "relationalAlgebraHint", Challenge::getRelationalAlgebraHint,
+            "successMessage", Challenge::getSuccessMessage,
+            "challengeType", Challenge::getChallengeType),
+            List.of("id", "stageNumber", "stageTitle", "difficulty", "description", "expectedQuery", "hint",
+                    "relationalAlgebraHint", "successMessage", "challengeType"));
+
+    // On /problems the fields select the properties of the problems inside each stage
+    static final CatalogProjection<StageResponse> STAGE = new CatalogProjection<>(PROBLEM_SUMMARY.names,
+            (stage, selected) -> {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("stageNumber", stage.getStageNumber());
+                row.put("stageTitle", stage.getStageTitle());
+                row.put("problems", PROBLEM_SUMMARY.apply(stage.getProblems(), selected));
+                return row;
+            });
+
+    private final Set<String> names;
+    private final BiFunction<T, Set<String>, Object> projector;
+
+    private CatalogProjection(Set<String> names, BiFunction<T, Set<String>, Object> projector) {
+        this.names = names;
+        this.projector = projector;
+    }
+
+    private static <T> CatalogProjection<T> fields(Map<String, Function<T, Object>> getters, List<String> order) {
+        return new CatalogProjection<>(new LinkedHashSet<>(order), (item, selected) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String name : selected) {
+                row.put(name, getters.get(name).apply(item));
+            }
+            return row;
+        });
+    }
+
+    /**
+     * Parses a fields= value into the selected names in declaration order; null selects everything
+     * @throws ValidationException when a name is unknown or nothing is selected
+     */
+    Set<String> parse(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!names.contains(name)) {
+                throw new ValidationException("Unknown field '" + name + "'; expected some of " + names);
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            throw new ValidationException("fields must name at least one of " + names);
+        }
+        Set<String> selected = new LinkedHashSet<>(names);
+        selected.retainAll(requested);
+        return selected;
+    }
+
+    /**
+     * The rows to serialize: the rows themselves when everything is selected, projected maps otherwise
+     */
+    Object apply(List<T> items, Set<String> selected) {
+        if (selected == null) {
+            return items;
+        }
+        List<Object> rows = new ArrayList<>(items.size());
+        for (T item : items) {
+            rows.add(projector.apply(item, selected));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,235 @@
+package com.leetquery.backend.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leetquery.backend.service.CatalogPage;
+import com.leetquery.backend.service.CatalogSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds catalog responses from bytes rendered once per content version.
+ *
+ * Each payload is serialized with Jackson and gzipped the first time it is requested for a
+ * snapshot; later requests write the stored bytes directly, picking the variant from
+ * Accept-Encoding. Responses carry a strong ETag per variant, and a request whose
+ * If-None-Match matches it is answered 304 by Spring MVC without a body.
+ *
+ * Listings may be paged with after= and limit= and trimmed with fields=. Each distinct page
+ * is rendered and cached like a whole payload, up to a bound per content version.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogResponses {
+
+    private static final String GZIP = "gzip";
+    private static final String TOTAL_COUNT = "X-Total-Count";
+    private static final String NEXT_CURSOR = "X-Next-Cursor";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.catalog.max-age-seconds:0}")
+    private long maxAgeSeconds;
+
+    @Value("${app.catalog.gzip-min-bytes:512}")
+    private int gzipMinBytes;
+
+    @Value("${app.catalog.max-rendered-payloads:1000}")
+    private int maxRenderedPayloads;
+
+    @Value("${app.catalog.page.default-limit:50}")
+    private int defaultLimit;
+
+    @Value("${app.catalog.page.max-limit:200}")
+    private int maxLimit;
+
+    // Payloads of the snapshot they were rendered from; replaced when the version changes
+    private volatile Rendered rendered = new Rendered(-1);
+
+    /**
+     * @param key identifies the payload within a snapshot, e.g. "levels/0/challenges"
+     * @param body produces the object to serialize; only called when the payload is not rendered yet
+     */
+    public ResponseEntity<byte[]> ok(CatalogSnapshot snapshot, String key, String acceptEncoding,
+                                     Supplier<Object> body) {
+        return respond(snapshot, key, acceptEncoding, body, ResponseEntity.ok());
+    }
+
+    /**
+     * A listing, whole or one page of it. Without after=, limit= and fields= the body is the
+     * same as the unpaged listing; X-Total-Count is always set, X-Next-Cursor while more pages follow.
+     * @param pager reads a page from the snapshot for a cursor and a limit
+     */
+    <T> ResponseEntity<byte[]> list(CatalogSnapshot snapshot, String key, String acceptEncoding,
+                                           String after, Integer limit, String fields,
+                                           CatalogProjection<T> projection, Pager<T> pager) {
+        Set<String> selected = projection.parse(fields);
+        int pageSize = after == null && limit == null ? Integer.MAX_VALUE
+                : Math.max(1, Math.min(limit == null ? defaultLimit : limit, maxLimit));
+        CatalogPage<T> page = pager.page(after, pageSize);
+
+        if (after != null || limit != null || selected != null) {
+            key = key + "?after=" + after + "&limit=" + pageSize
+                    + "&fields=" + (selected == null ? "" : String.join(",", selected));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(TOTAL_COUNT, String.valueOf(page.total()));
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR, page.nextCursor());
+        }
+        return respond(snapshot, key, acceptEncoding, () -> projection.apply(page.items(), selected), response);
+    }
+
+    private ResponseEntity<byte[]> respond(CatalogSnapshot snapshot, String key, String acceptEncoding,
+                                           Supplier<Object> body, ResponseEntity.BodyBuilder response) {
+        Payload payload = payloadFor(snapshot, key, body);
+        boolean gzip = payload.gzip != null && accepts(acceptEncoding, GZIP);
+
+        response.contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(cacheControl())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response
+                    .eTag(variantTag(snapshot.getETag(), GZIP))
+                    .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+                    .body(payload.gzip);
+        }
+        return response
+                .eTag(snapshot.getETag())
+                .body(payload.json);
+    }
+
+    private Payload payloadFor(CatalogSnapshot snapshot, String key, Supplier<Object> body) {
+        Map<String, Payload> payloads = payloadsFor(snapshot);
+        Payload payload = payloads.get(key);
+        if (payload == null) {
+            payload = render(body.get());
+            // Page parameters are unbounded, so past the cap pages are rendered per request
+            if (payloads.size() < maxRenderedPayloads) {
+                Payload raced = payloads.putIfAbsent(key, payload);
+                payload = raced != null ? raced : payload;
+            }
+        }
+        return payload;
+    }
+
+    private Map<String, Payload> payloadsFor(CatalogSnapshot snapshot) {
+        Rendered current = rendered;
+        if (current.version != snapshot.getVersion()) {
+            synchronized (this) {
+                current = rendered;
+                if (current.version < snapshot.getVersion()) {
+                    current = new Rendered(snapshot.getVersion());
+                    rendered = current;
+                } else if (current.version != snapshot.getVersion()) {
+                    // A request still holding an older snapshot renders without caching
+                    return new ConcurrentHashMap<>();
+                }
+            }
+        }
+        return current.payloads;
+    }
+
+    private Payload render(Object body) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(body);
+            return new Payload(json, json.length >= gzipMinBytes ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog payload", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Whether Accept-Encoding allows the coding, by name or through "*", with a non-zero q
+     */
+    private static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            if (name.equals(coding)) {
+                return quality(params) > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = quality(params) > 0;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Each encoding is a different representation, so it needs its own strong tag
+     */
+    private static String variantTag(String etag, String coding) {
+        return etag.substring(0, etag.length() - 1) + "-" + coding + "\"";
+    }
+
+    /**
+     * Clients may keep catalog responses, but revalidate once max-age has passed
+     */
+    private CacheControl cacheControl() {
+        if (maxAgeSeconds <= 0) {
+            return CacheControl.noCache().cachePublic();
+        }
+        return CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().mustRevalidate();
+    }
+
+    private static final class Rendered {
+        private final long version;
+        private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+
+        private Rendered(long version) {
+            this.version = version;
+        }
+    }
+
+    private record Payload(byte[] json, byte[] gzip) {
+    }
+
+    @FunctionalInterface
+    interface Pager<T> {
+        CatalogPage<T> page(String after, int limit);
+    }
+}
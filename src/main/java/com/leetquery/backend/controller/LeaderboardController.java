@@ -0,0 +1,50 @@
+package com.leetquery.backend.controller;
+
+import com.leetquery.backend.exception.ResourceNotFoundException;
+import com.leetquery.backend.exception.UnauthorizedException;
+import com.leetquery.backend.model.LeaderboardEntry;
+import com.leetquery.backend.security.UserPrincipal;
+import com.leetquery.backend.service.Leaderboard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.List;
+
+@RestController
+@RequestMapping("/leaderboard")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class LeaderboardController {
+
+    private final Leaderboard leaderboard;
+
+    /**
+     * The global leaders, or the leaders of one stage when levelId and stageNumber are given
+     */
+    @GetMapping
+    public ResponseEntity<List<LeaderboardEntry>> top(@RequestParam(required = false) Integer levelId,
+                                                      @RequestParam(required = false) Integer stageNumber,
+                                                      @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(leaderboard.top(levelId, stageNumber, limit));
+    }
+
+    /**
+     * The caller's place on the same boards
+     */
+    @GetMapping("/me")
+    public ResponseEntity<LeaderboardEntry> me(@RequestParam(required = false) Integer levelId,
+                                               @RequestParam(required = false) Integer stageNumber,
+                                               Principal principal) {
+        Long userId = UserPrincipal.idOf(principal);
+        if (userId == null) {
+            throw new UnauthorizedException("Sign in to see your rank");
+        }
+        LeaderboardEntry entry = leaderboard.rankOf(userId, levelId, stageNumber);
+        if (entry == null) {
+            throw new ResourceNotFoundException("Not ranked yet: complete a challenge first");
+        }
+        return ResponseEntity.ok(entry);
+    }
+}
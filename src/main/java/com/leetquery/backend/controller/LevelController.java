@@ -1,14 +1,17 @@
 package com.leetquery.backend.controller;
 
-import com.leetquery.backend.model.Challenge;
 import com.leetquery.backend.model.SchemaResponse;
+import com.leetquery.backend.security.UserPrincipal;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.CatalogSnapshot;
+import com.leetquery.backend.service.ProgressService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.security.Principal;
 
 @Slf4j
 @RestController
@@ -17,48 +20,44 @@ import java.util.List;
 @RequiredArgsConstructor
 public class LevelController {
     
-    private final JdbcTemplate jdbcTemplate;
+    private final CatalogService catalogService;
+    private final CatalogResponses catalogResponses;
+    private final ProgressService progressService;
     
     @GetMapping("/{levelId}/challenges")
-    public List<Challenge> getChallenges(@PathVariable int levelId) {
-        String sql = "SELECT id, stage_number, stage_title, difficulty, description, " +
-                    "expected_query, hint, relational_algebra_hint, success_message, challenge_type " +
-                    "FROM challenges WHERE level_id = ? ORDER BY stage_number, " +
-                    "CASE difficulty WHEN 'EASY' THEN 1 WHEN 'MEDIUM' THEN 2 WHEN 'HARD' THEN 3 END";
-        
-        return jdbcTemplate.query(sql, new Object[]{levelId}, (rs, rowNum) -> {
-            Challenge challenge = new Challenge();
-            challenge.setId(rs.getLong("id"));
-            challenge.setStageNumber(rs.getInt("stage_number"));
-            challenge.setStageTitle(rs.getString("stage_title"));
-            challenge.setDifficulty(rs.getString("difficulty"));
-            challenge.setDescription(rs.getString("description"));
-            challenge.setExpectedQuery(rs.getString("expected_query"));
-            challenge.setHint(rs.getString("hint"));
-            challenge.setRelationalAlgebraHint(rs.getString("relational_algebra_hint"));
-            challenge.setSuccessMessage(rs.getString("success_message"));
-            challenge.setChallengeType(rs.getString("challenge_type"));
-            return challenge;
-        });
+    public ResponseEntity<byte[]> getChallenges(@PathVariable int levelId,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CatalogSnapshot catalog = catalogService.snapshot();
+        return catalogResponses.list(catalog, "levels/" + levelId + "/challenges", acceptEncoding, after, limit, fields,
+                CatalogProjection.CHALLENGE, (cursor, size) -> catalog.pageChallenges(levelId, cursor, size));
     }
     
     @GetMapping("/{levelId}/schema")
-    public SchemaResponse getSchema(@PathVariable int levelId) {
-        String sql = "SELECT schema_info FROM tutorial_schema WHERE level_id = ? LIMIT 1";
-        try {
-            String schemaInfo = jdbcTemplate.queryForObject(sql, new Object[]{levelId}, String.class);
-            return new SchemaResponse(schemaInfo != null ? schemaInfo : "No schema available");
-        } catch (Exception e) {
-            log.error("Error fetching schema for level {}: {}", levelId, e.getMessage(), e);
-            // Handle table missing or data missing gracefully
-            return new SchemaResponse("Schema information currently unavailable for level " + levelId + ". Error: " + e.getMessage());
-        }
+    public ResponseEntity<byte[]> getSchema(@PathVariable int levelId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CatalogSnapshot catalog = catalogService.snapshot();
+        return catalogResponses.ok(catalog, "levels/" + levelId + "/schema", acceptEncoding, () -> {
+            String schemaInfo = catalog.getSchema(levelId);
+            if (schemaInfo == null) {
+                log.warn("No schema information for level {}", levelId);
+                schemaInfo = "Schema information currently unavailable for level " + levelId;
+            }
+            return new SchemaResponse(schemaInfo);
+        });
     }
     
+    /**
+     * Clears the caller's completed challenges; anonymous progress only lives on the client
+     */
     @PostMapping("/reset")
-    public ResponseEntity<Void> resetProgress() {
-        // Reset will be handled on client side (clear local progress)
-        // Could also clear user progress from database if needed
+    public ResponseEntity<Void> resetProgress(Principal principal) {
+        Long userId = UserPrincipal.idOf(principal);
+        if (userId != null) {
+            progressService.reset(userId);
+        }
         return ResponseEntity.ok().build();
     }
 }
@@ -1,48 +1,61 @@
 package com.leetquery.backend.controller;
 
 import com.leetquery.backend.model.Problem;
+import com.leetquery.backend.model.QueryProfile;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.CatalogSnapshot;
+import com.leetquery.backend.service.ExpectedQueryProfiler;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @CrossOrigin(origins = "*")
 @RequiredArgsConstructor
 public class ProblemController {
     
     private final JdbcTemplate jdbcTemplate;
+    private final CatalogService catalogService;
+    private final CatalogResponses catalogResponses;
+    private final ExpectedQueryProfiler expectedQueryProfiler;
     
     @GetMapping("/problems/{stageId}")
-    public List<Problem> getProblemsByStage(@PathVariable Integer stageId) {
-        String sql = "SELECT id, stage_id, title, description, expected_query FROM problems WHERE stage_id = ?";
-        
-        return jdbcTemplate.query(sql, new Object[]{stageId}, (rs, rowNum) -> {
-            Problem problem = new Problem();
-            problem.setId(rs.getInt("id"));
-            problem.setStageId(rs.getInt("stage_id"));
-            problem.setTitle(rs.getString("title"));
-            problem.setDescription(rs.getString("description"));
-            problem.setExpectedQuery(rs.getString("expected_query"));
-            return problem;
-        });
+    public ResponseEntity<byte[]> getProblemsByStage(@PathVariable Integer stageId,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CatalogSnapshot catalog = catalogService.snapshot();
+        return catalogResponses.list(catalog, "problems/" + stageId, acceptEncoding, after, limit, fields,
+                CatalogProjection.PROBLEM, (cursor, size) -> catalog.pageProblemsByStage(stageId, cursor, size));
     }
     
     @PostMapping("/admin/problem")
     public ResponseEntity<String> createProblem(@RequestBody Problem problem) {
-        String sql = "INSERT INTO problems (stage_id, title, description, expected_query) VALUES (?, ?, ?, ?)";
+        // Broken or slow expected queries are refused with 400 before anything is stored
+        QueryProfile profile = expectedQueryProfiler.profile(problem.getExpectedQuery());
+
+        String sql = "INSERT INTO problems (stage_id, title, description, expected_query, expected_row_count, " +
+                "expected_fingerprint, expected_columns, expected_execution_ms, change_version) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
         int rowsAffected = jdbcTemplate.update(
             sql,
             problem.getStageId(),
             problem.getTitle(),
             problem.getDescription(),
-            problem.getExpectedQuery()
+            problem.getExpectedQuery(),
+            profile != null ? profile.getRowCount() : null,
+            profile != null ? profile.getFingerprint() : null,
+            profile != null ? profile.getColumns() : null,
+            profile != null ? profile.getExecutionMs() : null,
+            catalogService.nextChangeVersion()
         );
         
         if (rowsAffected > 0) {
+            catalogService.refresh();
             return ResponseEntity.ok("Problem created successfully");
         } else {
             return ResponseEntity.status(500).body("Failed to create problem");
@@ -1,51 +1,28 @@
 package com.leetquery.backend.controller;
 
-import com.leetquery.backend.dto.ProblemResponse;
-import com.leetquery.backend.dto.StageResponse;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.CatalogSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.*;
-
 @RestController
 @CrossOrigin(origins = "*")
+@RequiredArgsConstructor
 public class ProblemsController {
 
-    @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private final CatalogService catalogService;
+    private final CatalogResponses catalogResponses;
 
     @GetMapping("/problems")
-    public List<StageResponse> getAllStagesWithProblems() {
-
-        List<Map<String, Object>> stages = jdbcTemplate.queryForList(
-            "SELECT id, title, order_no FROM stages ORDER BY order_no"
-        );
-
-        List<StageResponse> result = new ArrayList<>();
-
-        for (Map<String, Object> stage : stages) {
-
-            int stageId = (int) stage.get("id");
-            int stageNumber = (int) stage.get("order_no");
-            String stageTitle = (String) stage.get("title");
-
-            List<Map<String, Object>> problems = jdbcTemplate.queryForList(
-                "SELECT id, title, description FROM problems WHERE stage_id = ?",
-                stageId
-            );
-
-            List<ProblemResponse> problemList = problems.stream()
-                .map(p -> new ProblemResponse(
-                    (int) p.get("id"),
-                    (String) p.get("title"),
-                    (String) p.get("description")
-                ))
-                .toList();
-
-            result.add(new StageResponse(stageNumber, stageTitle, problemList));
-        }
-
-        return result;
+    public ResponseEntity<byte[]> getAllStagesWithProblems(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CatalogSnapshot catalog = catalogService.snapshot();
+        return catalogResponses.list(catalog, "problems", acceptEncoding, after, limit, fields,
+                CatalogProjection.STAGE, catalog::pageStagesWithProblems);
     }
 }
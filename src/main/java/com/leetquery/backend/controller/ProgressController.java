@@ -0,0 +1,31 @@
+package com.leetquery.backend.controller;
+
+import com.leetquery.backend.exception.UnauthorizedException;
+import com.leetquery.backend.model.ProgressResponse;
+import com.leetquery.backend.security.UserPrincipal;
+import com.leetquery.backend.service.ProgressService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+
+@RestController
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class ProgressController {
+
+    private final ProgressService progressService;
+
+    /**
+     * The caller's completed challenges, answered from memory
+     */
+    @GetMapping("/progress")
+    public ResponseEntity<ProgressResponse> getProgress(Principal principal) {
+        Long userId = UserPrincipal.idOf(principal);
+        if (userId == null) {
+            throw new UnauthorizedException("Sign in to track progress");
+        }
+        return ResponseEntity.ok(progressService.getProgress(userId));
+    }
+}
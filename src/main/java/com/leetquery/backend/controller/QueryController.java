@@ -1,35 +1,82 @@
 package com.leetquery.backend.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leetquery.backend.exception.SandboxUnavailableException;
+import com.leetquery.backend.exception.ServiceBusyException;
 import com.leetquery.backend.model.ErrorResponse;
+import com.leetquery.backend.model.GradeResponse;
+import com.leetquery.backend.model.QueryContext;
 import com.leetquery.backend.model.QueryRequest;
 import com.leetquery.backend.model.QueryResponse;
+import com.leetquery.backend.model.ScriptResponse;
+import com.leetquery.backend.security.UserPrincipal;
+import com.leetquery.backend.service.GradingService;
 import com.leetquery.backend.service.QueryExecutionService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.security.Principal;
 import java.sql.SQLException;
+import java.util.List;
 
 @Slf4j
 @RestController
 @RequiredArgsConstructor
 public class QueryController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final MediaType COLUMNAR = MediaType.parseMediaType("application/vnd.leetquery.columnar+json");
+
     private final QueryExecutionService queryExecutionService;
+    private final GradingService gradingService;
+    private final ObjectMapper objectMapper;
 
     /**
-     * POST /executeQuery - Executes a SQL query and returns results
+     * POST /executeQuery - Executes a SQL query and returns results.
+     * Columnar results are returned for "format": "columnar" or an Accept of application/vnd.leetquery.columnar+json.
      */
     @PostMapping("/executeQuery")
-    public ResponseEntity<?> executeQuery(@Valid @RequestBody QueryRequest request) {
+    public ResponseEntity<?> executeQuery(@Valid @RequestBody QueryRequest request, Principal principal,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             log.info("Received query execution request");
-            QueryResponse response = queryExecutionService.executeQuery(request.getQuery());
+            QueryContext context = toContext(request, principal);
+            context.setColumnar(wantsColumnar(request, accept));
+            QueryResponse response = queryExecutionService.executeQuery(request.getQuery(), context);
+            if (context.isColumnar()) {
+                return ResponseEntity.ok().contentType(COLUMNAR).body(response);
+            }
             return ResponseEntity.ok(response);
             
+        } catch (SandboxUnavailableException e) {
+            log.warn("Sandbox unavailable: {}", e.getMessage());
+            QueryResponse errorResponse = QueryResponse.builder()
+                    .success(false)
+                    .queryType("ERROR")
+                    .message(e.getMessage())
+                    .build();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+
+        } catch (ServiceBusyException e) {
+            log.warn("Service busy: {}", e.getMessage());
+            QueryResponse errorResponse = QueryResponse.builder()
+                    .success(false)
+                    .queryType("ERROR")
+                    .message(e.getMessage())
+                    .build();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(errorResponse);
+
         } catch (SQLException e) {
             log.error("SQL error: {}", e.getMessage());
             QueryResponse errorResponse = QueryResponse.builder()
@@ -50,6 +97,117 @@ public class QueryController {
         }
     }
 
+    /**
+     * POST /executeScript - Runs several semicolon-separated statements in one transaction
+     */
+    @PostMapping("/executeScript")
+    public ResponseEntity<?> executeScript(@Valid @RequestBody QueryRequest request, Principal principal) {
+        try {
+            log.info("Received script execution request");
+            ScriptResponse response = queryExecutionService.executeScript(request.getQuery(), toContext(request, principal));
+            return ResponseEntity.ok(response);
+
+        } catch (SandboxUnavailableException e) {
+            log.warn("Sandbox unavailable: {}", e.getMessage());
+            ScriptResponse errorResponse = ScriptResponse.builder()
+                    .success(false)
+                    .results(List.of())
+                    .message(e.getMessage())
+                    .build();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        }
+    }
+
+    /**
+     * POST /gradeQuery - Executes the query and grades it against the challenge's expected result
+     */
+    @PostMapping("/gradeQuery")
+    public ResponseEntity<?> gradeQuery(@Valid @RequestBody QueryRequest request, Principal principal) {
+        if (request.getChallengeId() == null) {
+            QueryResponse errorResponse = QueryResponse.builder()
+                    .success(false)
+                    .queryType("VALIDATION_ERROR")
+                    .message("challengeId is required for grading")
+                    .build();
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        try {
+            log.info("Received grading request for challenge {}", request.getChallengeId());
+            GradeResponse response = gradingService.grade(request.getQuery(), toContext(request, principal));
+            return ResponseEntity.ok(response);
+
+        } catch (SandboxUnavailableException e) {
+            log.warn("Sandbox unavailable: {}", e.getMessage());
+            QueryResponse errorResponse = QueryResponse.builder()
+                    .success(false)
+                    .queryType("ERROR")
+                    .message(e.getMessage())
+                    .build();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+        }
+    }
+
+    /**
+     * POST /executeQuery/stream - Executes a SQL query and streams rows as NDJSON
+     */
+    @PostMapping(value = "/executeQuery/stream", produces = NDJSON)
+    public void executeQueryStream(@Valid @RequestBody QueryRequest request, Principal principal,
+                                   HttpServletResponse response) throws IOException {
+        log.info("Received streaming query execution request");
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        try {
+            queryExecutionService.streamQuery(request.getQuery(), toContext(request, principal),
+                    response.getOutputStream());
+
+        } catch (SandboxUnavailableException e) {
+            log.warn("Sandbox unavailable: {}", e.getMessage());
+            if (response.isCommitted()) {
+                throw e;
+            }
+            writeStreamRefusal(response, e.getMessage());
+
+        } catch (ServiceBusyException e) {
+            log.warn("Service busy: {}", e.getMessage());
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            writeStreamRefusal(response, e.getMessage());
+        }
+    }
+
+    /**
+     * Answers a stream that never started with the same 503 body /executeQuery gives
+     */
+    private void writeStreamRefusal(HttpServletResponse response, String message) throws IOException {
+        QueryResponse errorResponse = QueryResponse.builder()
+                .success(false)
+                .queryType("ERROR")
+                .message(message)
+                .build();
+        response.resetBuffer();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+
+    /**
+     * POST /sandbox/reset - Discards the caller's sandbox so the tutorial data is pristine again
+     */
+    @PostMapping("/sandbox/reset")
+    public ResponseEntity<QueryResponse> resetSandbox(Principal principal) {
+        if (principal != null) {
+            queryExecutionService.resetSandbox(principal.getName());
+        }
+        return ResponseEntity.ok(QueryResponse.builder()
+                .success(true)
+                .queryType("RESET")
+                .message("Sandbox reset to the tutorial dataset")
+                .build());
+    }
+
     /**
      * GET /health - Health check endpoint
      */
@@ -58,6 +216,62 @@ public class QueryController {
         return ResponseEntity.ok("LeetQuery Backend is running!");
     }
 
+    /**
+     * POST /executeQuery/cancel - Cancels the caller's running query
+     */
+    @PostMapping("/executeQuery/cancel")
+    public ResponseEntity<QueryResponse> cancelQuery(Principal principal) {
+        boolean cancelled = principal != null && queryExecutionService.cancelQuery(principal.getName());
+        return ResponseEntity.ok(QueryResponse.builder()
+                .success(cancelled)
+                .queryType("CANCEL")
+                .message(cancelled ? "Query cancelled" : "No running query to cancel")
+                .build());
+    }
+
+    /**
+     * Authenticated learners get their own sandbox; anonymous calls use the shared database.
+     * The tier and challenge select the query budget.
+     */
+    private QueryContext toContext(QueryRequest request, Principal principal) {
+        return QueryContext.builder()
+                .owner(principal != null ? principal.getName() : null)
+                .userId(UserPrincipal.idOf(principal))
+                .tier(tierOf(principal))
+                .challengeId(request.getChallengeId())
+                .problemId(request.getProblemId())
+                .build();
+    }
+
+    private boolean wantsColumnar(QueryRequest request, String accept) {
+        if ("columnar".equalsIgnoreCase(request.getFormat())) {
+            return true;
+        }
+        if (accept == null) {
+            return false;
+        }
+        for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+            if (COLUMNAR.equalsTypeAndSubtype(mediaType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String tierOf(Principal principal) {
+        if (principal == null) {
+            return "anonymous";
+        }
+        if (principal instanceof Authentication authentication) {
+            boolean admin = authentication.getAuthorities().stream()
+                    .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+            if (admin) {
+                return "admin";
+            }
+        }
+        return "user";
+    }
+
     /**
      * Exception handler for validation errors
      */
@@ -0,0 +1,27 @@
+package com.leetquery.backend.controller;
+
+import com.leetquery.backend.model.SearchHit;
+import com.leetquery.backend.service.SearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class SearchController {
+
+    private final SearchIndex searchIndex;
+
+    /**
+     * Problems and challenges containing every word of q; the words may be prefixes ("gro" finds GROUP BY)
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<SearchHit>> search(@RequestParam("q") String query,
+                                                  @RequestParam(required = false) String type,
+                                                  @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(searchIndex.search(query, type, limit));
+    }
+}
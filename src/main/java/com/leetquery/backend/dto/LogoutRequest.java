@@ -0,0 +1,20 @@
+package com.leetquery.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Logout request DTO
+ * Carries the refresh token to revoke
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogoutRequest {
+    
+    // Same name as in AuthResponse
+    @JsonAlias("refresh_token")
+    private String refreshToken;
+}
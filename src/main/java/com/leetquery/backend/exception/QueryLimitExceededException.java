@@ -0,0 +1,26 @@
+package com.leetquery.backend.exception;
+
+/**
+ * Exception thrown when a running query is stopped by its budget or by the user
+ */
+public class QueryLimitExceededException extends RuntimeException {
+
+    private final String limit;
+
+    public QueryLimitExceededException(String limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+
+    public QueryLimitExceededException(String limit, String message, Throwable cause) {
+        super(message, cause);
+        this.limit = limit;
+    }
+
+    /**
+     * The limit that stopped the query, e.g. TIMEOUT or CANCELLED
+     */
+    public String getLimit() {
+        return limit;
+    }
+}
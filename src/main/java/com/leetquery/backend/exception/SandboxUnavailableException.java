@@ -0,0 +1,14 @@
+package com.leetquery.backend.exception;
+
+/**
+ * Exception thrown when no query sandbox can be leased
+ */
+public class SandboxUnavailableException extends RuntimeException {
+    public SandboxUnavailableException(String message) {
+        super(message);
+    }
+
+    public SandboxUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,14 @@
+package com.leetquery.backend.exception;
+
+/**
+ * Exception thrown when a bounded pool is saturated and work is turned away instead of queued
+ */
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+
+    public ServiceBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,8 +1,13 @@
 package com.leetquery.backend.filter;
 
 import com.leetquery.backend.config.RateLimitConfig;
+import com.leetquery.backend.config.RateLimitConfig.Tier;
+import com.leetquery.backend.security.UserPrincipal;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.ConsumptionProbe;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import jakarta.servlet.FilterChain;
@@ -13,11 +18,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
+import java.util.Set;
 
 /**
  * Rate Limiting Filter using Bucket4j
  * Limits the number of requests per user/IP address
+ *
+ * Requests are counted per tier: sign-in endpoints strictly, query execution moderately and
+ * catalog reads leniently. Signed-in users are keyed by their user id; anonymous requests by
+ * the remote address. Forwarding headers are never read here, since any client can send them:
+ * behind a trusted proxy, server.forward-headers-strategy makes the container put the real
+ * client address into the remote address instead.
  */
 @Component
 public class RateLimitingFilter extends OncePerRequestFilter {
@@ -37,6 +48,30 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             ".gif",
             ".ico"
     };
+    
+    private static final Set<String> QUERY_PATHS = Set.of(
+            "/executeQuery",
+            "/executeQuery/stream",
+            "/executeScript",
+            "/gradeQuery",
+            "/sandbox/reset"
+    );
+    
+    private static final String[] CATALOG_PATHS = {
+            "/problems",
+            "/stages",
+            "/levels",
+            "/catalog",
+            "/search",
+            "/leaderboard",
+            "/progress"
+    };
+    
+    @Autowired
+    private RateLimitConfig rateLimitConfig;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -48,11 +83,12 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             return;
         }
         
-        // Get client identifier
+        // Get client identifier and the tier of the endpoint
         String clientKey = getClientKey(request);
+        Tier tier = getTier(request);
         
         // Get or create bucket for this client
-        Bucket bucket = RateLimitConfig.resolveBucket(clientKey);
+        Bucket bucket = rateLimitConfig.resolveBucket(tier, clientKey);
         
         // Try to consume a token
         ConsumptionProbe probe = bucket.tryConsumeAndReturnRemaining(1);
@@ -79,29 +115,43 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             
             response.getWriter().write(errorMessage);
             
-            logger.warn("Rate limit exceeded for client: {} ({})", clientKey, request.getRemoteAddr());
+            meterRegistry.counter("rate.limit.rejected", "tier", tier.name()).increment();
+            logger.warn("Rate limit exceeded for client: {} ({}) on tier {}", clientKey, request.getRemoteAddr(), tier);
         }
     }
 
     /**
-     * Get client identifier (IP address or user ID)
-     * Tries to get the real IP if behind a proxy
+     * Get client identifier (user ID or IP address)
+     * Uses the user ID of a valid JWT, otherwise the remote address of the connection
      */
     private String getClientKey(HttpServletRequest request) {
-        String clientIP = request.getHeader("X-Forwarded-For");
-        if (clientIP == null || clientIP.isEmpty()) {
-            clientIP = request.getHeader("X-Real-IP");
-        }
-        if (clientIP == null || clientIP.isEmpty()) {
-            clientIP = request.getRemoteAddr();
+        Long userId = UserPrincipal.idOf(SecurityContextHolder.getContext().getAuthentication());
+        if (userId != null) {
+            return "user:" + userId;
         }
         
-        // If multiple IPs are forwarded, get the first one
-        if (clientIP.contains(",")) {
-            clientIP = clientIP.split(",")[0].trim();
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * Tier of the endpoint, by its path within the application
+     */
+    private Tier getTier(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/auth/")) {
+            return Tier.AUTH;
         }
-        
-        return clientIP;
+        if (QUERY_PATHS.contains(path)) {
+            return Tier.QUERY;
+        }
+        if ("GET".equals(request.getMethod())) {
+            for (String catalogPath : CATALOG_PATHS) {
+                if (path.equals(catalogPath) || path.startsWith(catalogPath + "/")) {
+                    return Tier.CATALOG;
+                }
+            }
+        }
+        return Tier.DEFAULT;
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.leetquery.backend.filter;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
@@ -22,11 +23,26 @@ public class RequestResponseLoggingFilter extends OncePerRequestFilter {
     
     private static final Logger logger = LoggerFactory.getLogger(RequestResponseLoggingFilter.class);
     private static final int MAX_PAYLOAD_SIZE = 10000;
+    private static final String STREAM_SUFFIX = "/stream";
+    private static final String IMPORT_PATH = "/admin/import/";
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         
+        // Streamed responses must reach the client as they are written, and bulk uploads are
+        // parsed as they arrive, so never buffer either
+        if (isStreamingRequest(request)) {
+            long startTime = System.currentTimeMillis();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                logger.info("STREAM: {} {} - Status: {} - Duration: {}ms", request.getMethod(),
+                        request.getRequestURI(), response.getStatus(), System.currentTimeMillis() - startTime);
+            }
+            return;
+        }
+
         ContentCachingRequestWrapper wrappedRequest = new ContentCachingRequestWrapper(request);
         ContentCachingResponseWrapper wrappedResponse = new ContentCachingResponseWrapper(response);
         
@@ -82,7 +98,10 @@ public class RequestResponseLoggingFilter extends OncePerRequestFilter {
             logger.debug("Response Content-Type: {}", contentType);
         }
         
-        // Log response body
+        // Log response body; encoded (e.g. gzipped) bodies are not readable text
+        if (!logger.isDebugEnabled() || response.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            return;
+        }
         byte[] content = response.getContentAsByteArray();
         if (content.length > 0 && contentType != null && contentType.contains("application/json")) {
             String body = new String(content, StandardCharsets.UTF_8);
@@ -93,6 +112,11 @@ public class RequestResponseLoggingFilter extends OncePerRequestFilter {
         }
     }
 
+    private boolean isStreamingRequest(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        return uri.endsWith(STREAM_SUFFIX) || uri.contains(IMPORT_PATH);
+    }
+
     private boolean shouldLogBody(String method) {
         return "POST".equals(method) || "PUT".equals(method) || "PATCH".equals(method);
     }
@@ -0,0 +1,30 @@
+package com.leetquery.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One catalog row as of its latest change: the row itself, or a deletion marker
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CatalogChange {
+
+    // "stage", "problem", "challenge" or "schema"
+    private String type;
+    // Row id; the level id for schemas
+    private long id;
+    // Challenges only
+    private Integer levelId;
+    private long version;
+    // Set only for deletions, which carry no data
+    private Boolean deleted;
+    // The row as /stages, /problems/{stageId} or /levels/{id}/challenges return it; the text for schemas
+    private Object data;
+}
@@ -0,0 +1,28 @@
+package com.leetquery.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog rows changed since a client's version, oldest first
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CatalogChanges {
+
+    // Pass as since on the next sync
+    private long version;
+    private List<CatalogChange> changes;
+    // Ids of every live row per type, sent when the server cannot list deletions since the
+    // client's version; rows missing from here are gone
+    private Map<String, List<Long>> liveIds;
+}
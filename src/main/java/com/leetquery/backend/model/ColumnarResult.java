@@ -0,0 +1,56 @@
+package com.leetquery.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Column-oriented result set: names and JDBC types once, then one value array per column.
+ * Numbers and booleans are serialized as native JSON values.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnarResult {
+
+    private List<Column> columns;
+
+    /**
+     * Approximate size of the values, used for the byte budget and cache weighing
+     */
+    @JsonIgnore
+    private long byteSize;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Column {
+
+        private String name;
+
+        /**
+         * JDBC type name, e.g. INTEGER, DECIMAL, VARCHAR, DATE
+         */
+        private String type;
+
+        /**
+         * long[], double[], BigDecimal[], boolean[] or String[] with one slot per row;
+         * slots of NULL values hold 0, false or null
+         */
+        private Object values;
+
+        /**
+         * Base64 bitmap with bit i (least significant first) set when row i is NULL.
+         * Omitted when the column has no NULLs.
+         */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String nulls;
+    }
+}
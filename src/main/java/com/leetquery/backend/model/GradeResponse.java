@@ -0,0 +1,28 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradeResponse {
+
+    private Long challengeId;
+    private boolean correct;
+
+    /**
+     * False when the result could not be compared, e.g. it hit a row limit or the expected result
+     * is unavailable; correct is then false and the attempt is not recorded
+     */
+    private boolean graded;
+    private String message;
+
+    /**
+     * The learner's own query result, so the client needs no second execution
+     */
+    private QueryResponse result;
+}
@@ -0,0 +1,36 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: rows that were inserted and rows that were skipped, with the reason
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResponse {
+
+    private boolean success;
+    private String type;
+    private int rowsRead;
+    private int inserted;
+    private int failed;
+    // First few failures only; failed counts all of them
+    private List<RowError> errors;
+    private String message;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        // 1-based position of the row in the upload, not counting a CSV header
+        private int row;
+        private String error;
+    }
+}
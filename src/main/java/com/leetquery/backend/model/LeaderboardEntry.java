@@ -0,0 +1,26 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One learner's place on a leaderboard
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeaderboardEntry {
+
+    // 1-based; ties go to whoever reached the score first
+    private int rank;
+    private Long userId;
+    private String username;
+    private int challengesCompleted;
+    // When the last of those challenges was solved
+    private LocalDateTime reachedAt;
+}
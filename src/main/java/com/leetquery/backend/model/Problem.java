@@ -1,5 +1,6 @@
 package com.leetquery.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,4 +14,24 @@ public class Problem {
     private String title;
     private String description;
     private String expectedQuery;
+
+    /**
+     * Profile of expectedQuery taken when the problem was written; null for problems never profiled
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer expectedRowCount;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String expectedFingerprint;
+
+    // Result column names, comma-separated
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String expectedColumns;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long expectedExecutionMs;
+
+    public Problem(Integer id, Integer stageId, String title, String description, String expectedQuery) {
+        this(id, stageId, title, description, expectedQuery, null, null, null, null);
+    }
 }
@@ -0,0 +1,27 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A learner's progress as kept by the progress store
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProgressResponse {
+
+    private Long userId;
+    private int challengesCompleted;
+    // Ascending
+    private List<Long> completedChallengeIds;
+    // Summed over every graded submission, correct or not
+    private long totalExecutionTimeMs;
+    private LocalDateTime lastActivityAt;
+}
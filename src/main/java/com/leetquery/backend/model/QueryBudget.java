@@ -0,0 +1,21 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resource limits for a single query execution.
+ * Null fields mean "not specified" when budgets are merged.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryBudget {
+
+    private Long timeoutMs;
+    private Integer maxRows;
+    private Long maxResultBytes;
+}
@@ -0,0 +1,57 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Per-request information the execution layer needs besides the SQL text
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryContext {
+
+    /**
+     * Sandbox lease owner (the authenticated username).
+     * Null runs the query against the shared database.
+     */
+    private String owner;
+
+    /**
+     * Id of the signed-in user; null for anonymous and internal queries, which keep no history
+     */
+    private Long userId;
+
+    /**
+     * User tier used to pick the query budget: anonymous, user or admin.
+     * Null applies the default budget.
+     */
+    private String tier;
+
+    /**
+     * Challenge the query answers, if any; its challenge_type selects the budget
+     */
+    private Long challengeId;
+
+    /**
+     * Practice problem the query answers, if any; recorded in the query history
+     */
+    private Long problemId;
+
+    /**
+     * Return SELECT results as typed per-column arrays instead of rows of strings
+     */
+    private boolean columnar;
+
+    /**
+     * Always run the statement instead of serving it from the result cache, e.g. when timing it
+     */
+    private boolean bypassCache;
+
+    public static QueryContext shared() {
+        return new QueryContext();
+    }
+}
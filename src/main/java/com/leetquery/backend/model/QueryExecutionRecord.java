@@ -0,0 +1,33 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row of the query_executions history table
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryExecutionRecord {
+
+    private Long userId;
+    private Long problemId;
+    private Long challengeId;
+    private String query;
+
+    /**
+     * SUCCESS, ERROR, or the limit that stopped the statement: TIMEOUT, CANCELLED, REJECTED,
+     * ROW_LIMIT or BYTE_LIMIT
+     */
+    private String status;
+    private String errorMessage;
+    private Integer resultRows;
+    private long executionTimeMs;
+    private LocalDateTime createdAt;
+}
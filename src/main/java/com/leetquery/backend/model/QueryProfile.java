@@ -0,0 +1,23 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What an expected query returned when it was run at content-write time
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryProfile {
+
+    private Integer rowCount;
+    // Order-insensitive hash of the result rows, as used for grading
+    private String fingerprint;
+    // Result column names, comma-separated
+    private String columns;
+    private Long executionMs;
+}
@@ -12,9 +12,19 @@ public class QueryRequest {
     
     private Integer weekNumber;
     private Long challengeId;
+
+    /**
+     * Practice problem the query answers, if any; kept with the query history
+     */
+    private Long problemId;
     
     @NotBlank(message = "Query cannot be empty")
     private String userQuery;
+
+    /**
+     * Result format: "rows" (default) or "columnar"
+     */
+    private String format;
     
     // For compatibility with any existing code that uses .getQuery()
     public String getQuery() {
@@ -1,5 +1,6 @@
 package com.leetquery.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,5 +19,21 @@ public class QueryResponse {
     private List<String> headers;
     private List<List<String>> rows;
     private Integer rowCount;
+
+    /**
+     * Typed per-column result, set instead of headers and rows when the columnar format was requested
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ColumnarResult columnar;
+
     private String message;
+
+    /**
+     * Budget limit that stopped or truncated the query: TIMEOUT, ROW_LIMIT, BYTE_LIMIT or CANCELLED
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String limitHit;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean truncated;
 }
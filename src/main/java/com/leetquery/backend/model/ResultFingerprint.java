@@ -0,0 +1,31 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Order-insensitive summary of a query result used for grading.
+ * Rows are hashed individually and combined with sum and xor, so two results
+ * match when they hold the same multiset of rows regardless of row order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResultFingerprint {
+
+    /**
+     * Statement category of the expected query (DQL, DML, DDL, ...)
+     */
+    private String category;
+
+    /**
+     * False when the expected query could not run; DQL and DML submissions are not graded then
+     */
+    private boolean comparable;
+
+    private int rowCount;
+    private int columnCount;
+    private long rowHashSum;
+    private long rowHashXor;
+}
@@ -0,0 +1,23 @@
+package com.leetquery.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Outcome of a multi-statement script: one result section per statement that ran
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScriptResponse {
+
+    private boolean success;
+    private int statementCount;
+    private List<QueryResponse> results;
+    private String message;
+}
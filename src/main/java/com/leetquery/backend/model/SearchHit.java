@@ -0,0 +1,30 @@
+package com.leetquery.backend.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A problem or challenge matching a search, with the fields needed to link to it
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SearchHit {
+
+    // "problem" or "challenge"
+    private String type;
+    private long id;
+    private String title;
+    // Problems only
+    private Integer stageId;
+    // Challenges only
+    private Integer levelId;
+    private Integer stageNumber;
+    private String difficulty;
+    private int score;
+}
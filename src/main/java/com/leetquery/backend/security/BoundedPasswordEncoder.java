@@ -0,0 +1,109 @@
+package com.leetquery.backend.security;
+
+import com.leetquery.backend.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordEncoder that runs the wrapped encoder on a small pool of its own threads
+ *
+ * BCrypt is deliberately slow, so a burst of logins or sign-ups could otherwise occupy every
+ * request thread. Here at most threads hashes run at once and queueCapacity more wait; anything
+ * beyond that is refused straight away with ServiceBusyException, as is a hash still waiting
+ * after waitMs. A hash that times out before starting is dropped from the queue; one already
+ * running cannot be interrupted and keeps its thread until it finishes, so capacity only comes
+ * back when the work is really done. Callers should not hold a database connection while
+ * hashing. The pool is exported to Micrometer as passwordHashing.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(BoundedPasswordEncoder.class);
+
+    private static final String BUSY = "Too many sign-ins in progress. Please try again shortly.";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService executor;
+    private final long waitMs;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long waitMs,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.waitMs = waitMs;
+        AtomicInteger ids = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + ids.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "passwordHashing");
+        this.rejected = meterRegistry.counter("password.hashing.rejected");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Password hashing pool saturated ({} queued), rejecting", pool.getQueue().size());
+            throw new ServiceBusyException(BUSY, e);
+        }
+        try {
+            return future.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // BCrypt ignores interrupts, so only a hash that has not started yet is actually stopped
+            future.cancel(false);
+            pool.purge();
+            rejected.increment();
+            throw new ServiceBusyException(BUSY, e);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            pool.purge();
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -29,6 +29,9 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
     /**
      * Load user details by username
      * Throws UsernameNotFoundException if user not found
@@ -46,6 +49,15 @@ public class CustomUserDetailsService implements UserDetailsService {
         return buildUserDetails(user);
     }
 
+    /**
+     * Load user details for an authenticated request through UserDetailsCache, so only a cold miss
+     * reaches the users table. Not for the login path: authentication erases the password of the
+     * principal it checks, which must not happen to a shared cached instance.
+     */
+    public UserPrincipal loadUserForToken(String usernameOrEmail) throws UsernameNotFoundException {
+        return userDetailsCache.get(usernameOrEmail, name -> (UserPrincipal) loadUserByUsername(name));
+    }
+
     /**
      * Load user details by user ID
      */
@@ -80,14 +92,13 @@ public class CustomUserDetailsService implements UserDetailsService {
         // In future, could add additional roles based on user type
         // authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
         
-        return org.springframework.security.core.userdetails.User.builder()
-                .username(user.getUsername())
-                .password(user.getPassword())
-                .authorities(authorities)
-                .accountExpired(false)
-                .accountLocked(user.getIsAccountLocked())
-                .credentialsExpired(false)
-                .disabled(!user.getIsEnabled())
-                .build();
+        return new UserPrincipal(
+                user.getId(),
+                user.getEmail(),
+                user.getUsername(),
+                user.getPassword(),
+                user.getIsEnabled(),
+                !user.getIsAccountLocked(),
+                authorities);
     }
 }
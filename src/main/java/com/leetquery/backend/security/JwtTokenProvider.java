@@ -1,19 +1,36 @@
 package com.leetquery.backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT Token Provider
  * Handles token generation, validation, and claims extraction
+ *
+ * The signing key and parser are built once. verify() checks a token and returns its claims;
+ * tokens verified in the last verified-cache.max-ttl-seconds are answered from a cache keyed by
+ * the token's SHA-256 digest, and no entry outlives the token's own expiry.
  */
 @Component
 public class JwtTokenProvider {
@@ -29,6 +46,49 @@ public class JwtTokenProvider {
     @Value("${app.jwtRefreshExpirationMs:604800000}")  // 7 days
     private long jwtRefreshExpirationMs;
     
+    @Value("${app.jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+    
+    @Value("${app.jwt.verified-cache.max-ttl-seconds:30}")
+    private long verifiedCacheMaxTtlSeconds;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private SecretKey signingKey;
+    private JwtParser parser;
+    private Cache<String, Claims> verifiedTokens;
+    
+    @PostConstruct
+    public void init() {
+        signingKey = getSigningKey();
+        parser = Jwts.parser().verifyWith(signingKey).build();
+        long maxTtlNanos = TimeUnit.SECONDS.toNanos(verifiedCacheMaxTtlSeconds);
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        long untilExpiry = TimeUnit.MILLISECONDS.toNanos(
+                                claims.getExpiration().getTime() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(untilExpiry, maxTtlNanos));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedTokens");
+    }
+    
     /**
      * Generate JWT token from Authentication
      */
@@ -41,7 +101,7 @@ public class JwtTokenProvider {
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
@@ -56,26 +116,63 @@ public class JwtTokenProvider {
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
     /**
      * Generate refresh token
+     * Each one carries a unique id (jti) so it can be rotated and revoked
      */
     public String generateRefreshToken(String username) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtRefreshExpirationMs);
         
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expiryDate)
                 .claim("type", "refresh")
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
+    /**
+     * Verify a token once and return its claims, or null when it is malformed, forged or expired
+     */
+    public Claims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+        String digest = digest(token);
+        Claims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && cached.getExpiration().after(new Date())) {
+            return cached;
+        }
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(digest, claims);
+            }
+            return claims;
+        } catch (MalformedJwtException ex) {
+            logger.error("Invalid JWT token: {}", ex.getMessage());
+        } catch (ExpiredJwtException ex) {
+            logger.error("Expired JWT token: {}", ex.getMessage());
+        } catch (UnsupportedJwtException ex) {
+            logger.error("Unsupported JWT token: {}", ex.getMessage());
+        } catch (IllegalArgumentException ex) {
+            logger.error("JWT claims string is empty: {}", ex.getMessage());
+        } catch (SignatureException ex) {
+            logger.error("JWT signature validation failed: {}", ex.getMessage());
+        } catch (JwtException ex) {
+            logger.error("Invalid JWT token: {}", ex.getMessage());
+        }
+        return null;
+    }
+    
     /**
      * Get username from token
      */
@@ -109,44 +206,31 @@ public class JwtTokenProvider {
      * Validate JWT token
      */
     public boolean validateToken(String token) {
-        try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (MalformedJwtException ex) {
-            logger.error("Invalid JWT token: {}", ex.getMessage());
-        } catch (ExpiredJwtException ex) {
-            logger.error("Expired JWT token: {}", ex.getMessage());
-        } catch (UnsupportedJwtException ex) {
-            logger.error("Unsupported JWT token: {}", ex.getMessage());
-        } catch (IllegalArgumentException ex) {
-            logger.error("JWT claims string is empty: {}", ex.getMessage());
-        } catch (SignatureException ex) {
-            logger.error("JWT signature validation failed: {}", ex.getMessage());
-        }
-        return false;
+        return verify(token) != null;
     }
     
     /**
      * Get all claims from token
      */
     private Claims getAllClaimsFromToken(String token) {
+        Claims claims = verify(token);
+        if (claims == null) {
+            throw new JwtException("Invalid JWT token");
+        }
+        return claims;
+    }
+    
+    private static String digest(String token) {
         try {
-            return Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-        } catch (JwtException ex) {
-            logger.error("Failed to parse JWT token: {}", ex.getMessage());
-            throw new JwtException("Invalid JWT token", ex);
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
         }
     }
     
     /**
-     * Get signing key for token
+     * Derive the signing key; called once at startup
      * Uses HMAC-SHA256 algorithm
      */
     private SecretKey getSigningKey() {
@@ -199,19 +283,24 @@ public class JwtTokenProvider {
      * Validate refresh token
      */
     public boolean validateRefreshToken(String token) {
-        try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-            
-            // Check if token is a refresh token
-            Object tokenType = claims.get("type");
-            return "refresh".equals(tokenType) && !isTokenExpired(token);
-        } catch (JwtException | IllegalArgumentException ex) {
-            logger.error("Invalid refresh token: {}", ex.getMessage());
-            return false;
-        }
+        return verifyRefreshToken(token) != null;
+    }
+    
+    /**
+     * Claims of a valid, unexpired access token, or null for anything else
+     * Refresh tokens are refused so a rotated or revoked one cannot be used as a bearer token
+     */
+    public Claims verifyAccessToken(String token) {
+        Claims claims = verify(token);
+        return claims != null && !"refresh".equals(claims.get("type")) ? claims : null;
+    }
+    
+    /**
+     * Claims of a valid, unexpired refresh token, or null for anything else
+     */
+    public Claims verifyRefreshToken(String token) {
+        // verify() already rejects expired tokens
+        Claims claims = verify(token);
+        return claims != null && "refresh".equals(claims.get("type")) ? claims : null;
     }
 }
@@ -0,0 +1,289 @@
+package com.leetquery.backend.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Revoked refresh-token ids (jti), checked in memory and written behind to revoked_refresh_tokens.
+ *
+ * Each id is kept until its token would have expired anyway. Lookups go through a Bloom filter
+ * first, so the common case of a token that was never revoked costs a few bit tests; a hit is
+ * confirmed against the map. revoke() decides in memory, which is what makes a refresh token
+ * single-use without a database round trip; the row reaches the table on the next flush and is
+ * loaded back on startup. Expired ids are purged from both, and the filter is rebuilt to match.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RefreshTokenRevocations {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO revoked_refresh_tokens (jti, expires_at, revoked_at) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.refresh-revocations.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${app.security.refresh-revocations.purge-interval-ms:3600000}")
+    private long purgeIntervalMs;
+
+    @Value("${app.security.refresh-revocations.batch-size:500}")
+    private int batchSize;
+
+    // jti -> epoch millis at which the token expires
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Revocation> unsaved = new ConcurrentLinkedQueue<>();
+    private final Object flushLock = new Object();
+    private volatile BloomFilter filter = new BloomFilter(1024);
+    private Thread flusher;
+    private volatile boolean running;
+    private long lastPurge;
+
+    private Counter revokedCount;
+    private Counter reused;
+
+    @PostConstruct
+    public void init() {
+        revokedCount = meterRegistry.counter("refresh.tokens.revoked");
+        reused = meterRegistry.counter("refresh.tokens.reused");
+        meterRegistry.gauge("refresh.tokens.revoked.size", revoked, Map::size);
+    }
+
+    /**
+     * Loads revocations that have not expired yet; the table exists once DatabaseInitializer has run
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.query("SELECT jti, expires_at FROM revoked_refresh_tokens WHERE expires_at > ?",
+                rs -> {
+                    revoked.put(rs.getString("jti"), rs.getTimestamp("expires_at").getTime());
+                },
+                new Timestamp(now));
+        rebuildFilter();
+        lastPurge = now;
+        log.info("Loaded {} refresh token revocation(s)", revoked.size());
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "refresh-revocation-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(flushIntervalMs + 5000);
+        }
+        flush();
+    }
+
+    /**
+     * Whether the id has been revoked
+     */
+    public boolean isRevoked(String jti) {
+        return filter.mightContain(jti) && revoked.containsKey(jti);
+    }
+
+    /**
+     * Revokes the id until expiresAt (epoch millis)
+     * @return false when it was already revoked, so exactly one caller wins a race to use a token
+     */
+    public boolean revoke(String jti, long expiresAt) {
+        if (revoked.putIfAbsent(jti, expiresAt) != null) {
+            reused.increment();
+            return false;
+        }
+        BloomFilter current = filter;
+        current.add(jti);
+        if (revoked.size() > current.capacity()) {
+            rebuildFilter();
+        }
+        unsaved.add(new Revocation(jti, expiresAt, System.currentTimeMillis()));
+        revokedCount.increment();
+        return true;
+    }
+
+    /**
+     * Writes every pending revocation; used by the flusher, on shutdown and by tests
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Revocation> batch = new ArrayList<>(batchSize);
+            Revocation next;
+            while ((next = unsaved.poll()) != null) {
+                batch.add(next);
+                if (batch.size() == batchSize) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            try {
+                flush();
+                if (System.currentTimeMillis() - lastPurge >= purgeIntervalMs) {
+                    purge();
+                }
+            } catch (Exception e) {
+                log.warn("Refresh token revocation maintenance failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void write(List<Revocation> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, revocation) -> {
+                ps.setString(1, revocation.jti());
+                ps.setTimestamp(2, new Timestamp(revocation.expiresAt()));
+                ps.setTimestamp(3, new Timestamp(revocation.revokedAt()));
+            });
+        } catch (Exception e) {
+            // Part of the batch may have been written; retry row by row so those are skipped
+            log.debug("Batch write of {} revocation(s) failed, retrying singly: {}", batch.size(), e.getMessage());
+            for (Revocation revocation : batch) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, revocation.jti(), new Timestamp(revocation.expiresAt()),
+                            new Timestamp(revocation.revokedAt()));
+                } catch (DuplicateKeyException duplicate) {
+                    // Already stored
+                } catch (Exception rowFailure) {
+                    // Still enforced in memory; keep the row for the next flush
+                    log.warn("Failed to write refresh token revocation: {}", rowFailure.getMessage());
+                    unsaved.add(revocation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops ids whose tokens have expired, from memory and from the table
+     */
+    void purge() {
+        long now = System.currentTimeMillis();
+        lastPurge = now;
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        rebuildFilter();
+        int deleted = jdbcTemplate.update("DELETE FROM revoked_refresh_tokens WHERE expires_at <= ?",
+                new Timestamp(now));
+        log.debug("Purged {} expired refresh token revocation(s)", deleted);
+    }
+
+    private synchronized void rebuildFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(1024, revoked.size() * 2));
+        revoked.keySet().forEach(rebuilt::add);
+        filter = rebuilt;
+        // Ids revoked while copying may have gone into the old filter only
+        revoked.keySet().forEach(rebuilt::add);
+    }
+
+    private record Revocation(String jti, long expiresAt, long revokedAt) {
+    }
+
+    /**
+     * Fixed-size Bloom filter over strings: about 10 bits and 7 probes per expected entry,
+     * roughly a 1% false-positive rate at capacity. Safe for concurrent adds and lookups.
+     */
+    private static final class BloomFilter {
+        private static final int PROBES = 7;
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int capacity;
+
+        BloomFilter(int capacity) {
+            this.capacity = capacity;
+            this.bits = Math.max(64, (long) capacity * 10);
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+        }
+
+        int capacity() {
+            return capacity;
+        }
+
+        void add(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < PROBES; i++) {
+                long bit = index(hash, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                while (((current = words.get(word)) & mask) == 0
+                        && !words.compareAndSet(word, current, current | mask)) {
+                    // Retry until the bit is set
+                }
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < PROBES; i++) {
+                long bit = index(hash, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Double hashing: probe i is h1 + i * h2, both halves of one 64-bit hash
+         */
+        private long index(long hash, int i) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            return Integer.toUnsignedLong(h1 + i * h2) % bits;
+        }
+
+        /**
+         * 64-bit FNV-1a over the characters, finished with a murmur3 mix
+         */
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
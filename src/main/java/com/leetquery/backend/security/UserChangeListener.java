@@ -0,0 +1,35 @@
+package com.leetquery.backend.security;
+
+import com.leetquery.backend.model.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA listener on User that evicts the account from UserDetailsCache on every update or delete
+ */
+@Component
+@RequiredArgsConstructor
+public class UserChangeListener {
+
+    private final UserDetailsCache userDetailsCache;
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(User user) {
+        Long userId = user.getId();
+        userDetailsCache.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A request that reloads before the commit would cache the old row again
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userDetailsCache.invalidate(userId);
+                }
+            });
+        }
+    }
+}
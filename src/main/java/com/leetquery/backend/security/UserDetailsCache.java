@@ -0,0 +1,63 @@
+package com.leetquery.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the principals built for JWT requests, keyed by the name in the token.
+ *
+ * Entries expire after ttl-seconds and are evicted by UserChangeListener whenever a User row is
+ * updated or deleted, so locking, disabling or re-passwording an account takes effect on the next
+ * request. Lookups that fail (unknown, disabled or locked users) are not cached.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserDetailsCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.user-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.security.user-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private Cache<String, UserPrincipal> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+
+    /**
+     * The cached principal for the name, loading it on a miss; exceptions from the loader propagate
+     */
+    UserPrincipal get(String usernameOrEmail, Function<String, UserPrincipal> loader) {
+        return cache.get(usernameOrEmail, loader);
+    }
+
+    /**
+     * Drops every entry of the user, whether it was looked up by username or by email
+     */
+    public void invalidate(Long userId) {
+        cache.asMap().values().removeIf(principal -> principal.getId().equals(userId));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,44 @@
+package com.leetquery.backend.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.security.Principal;
+import java.util.Collection;
+
+/**
+ * Authenticated user details that also carry the user id,
+ * so request handlers do not need another lookup by username
+ */
+public class UserPrincipal extends User {
+
+    private final Long id;
+    private final String email;
+
+    public UserPrincipal(Long id, String email, String username, String password, boolean enabled,
+                         boolean accountNonLocked, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, enabled, true, true, accountNonLocked, authorities);
+        this.id = id;
+        this.email = email;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * The user id behind a request principal, or null when the request is anonymous
+     */
+    public static Long idOf(Principal principal) {
+        if (principal instanceof Authentication authentication
+                && authentication.getPrincipal() instanceof UserPrincipal user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
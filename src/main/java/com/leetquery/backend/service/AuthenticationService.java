@@ -7,7 +7,11 @@ import com.leetquery.backend.exception.ValidationException;
 import com.leetquery.backend.exception.UnauthorizedException;
 import com.leetquery.backend.model.User;
 import com.leetquery.backend.repository.UserRepository;
+import com.leetquery.backend.security.CustomUserDetailsService;
 import com.leetquery.backend.security.JwtTokenProvider;
+import com.leetquery.backend.security.RefreshTokenRevocations;
+import com.leetquery.backend.security.UserPrincipal;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,11 +19,10 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
 
 /**
  * Authentication Service
@@ -41,12 +44,19 @@ public class AuthenticationService {
     
     @Autowired
     private PasswordEncoder passwordEncoder;
+    
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private RefreshTokenRevocations refreshTokenRevocations;
 
     /**
      * Register a new user
-     * Validates input and creates a new user account
+     * Validates input and creates a new user account. Not transactional: the password is hashed
+     * on the hashing pool, which can take up to its wait time, and no database connection should
+     * be held meanwhile. The lookups and the insert each run in their own short transaction.
      */
-    @Transactional
     public AuthResponse register(RegisterRequest registerRequest) {
         logger.info("Attempting to register user: {}", registerRequest.getEmail());
         
@@ -68,6 +78,8 @@ public class AuthenticationService {
             throw new ValidationException("Invalid email format");
         }
         
+        String encodedPassword = passwordEncoder.encode(registerRequest.getPassword());
+        
         // Check if user already exists
         if (userRepository.findByUsername(registerRequest.getUsername()).isPresent()) {
             throw new ValidationException("Username already exists");
@@ -81,7 +93,7 @@ public class AuthenticationService {
         User user = new User();
         user.setUsername(registerRequest.getUsername());
         user.setEmail(registerRequest.getEmail());
-        user.setPassword(passwordEncoder.encode(registerRequest.getPassword()));
+        user.setPassword(encodedPassword);
         user.setEnabled(true);
         user.setAccountNotLocked(true);
         user.setAccountNotExpired(true);
@@ -106,9 +118,9 @@ public class AuthenticationService {
 
     /**
      * Login user with username/email and password
-     * Returns JWT tokens upon successful authentication
+     * Returns JWT tokens upon successful authentication. Not transactional, so the password check
+     * on the hashing pool runs without a database connection; only the user lookup needs one.
      */
-    @Transactional(readOnly = true)
     public AuthResponse login(LoginRequest loginRequest) {
         logger.info("Attempting to login: {}", loginRequest.getUsername());
         
@@ -130,16 +142,9 @@ public class AuthenticationService {
                     )
             );
             
-            // Get authenticated user
-            String username = authentication.getName();
-            Optional<User> userOptional = userRepository.findByUsername(username)
-                    .or(() -> userRepository.findByEmail(username));
-            
-            if (userOptional.isEmpty()) {
-                throw new UnauthorizedException("User not found");
-            }
-            
-            User user = userOptional.get();
+            // The principal was loaded while authenticating, so no second lookup is needed
+            UserPrincipal user = (UserPrincipal) authentication.getPrincipal();
+            String username = user.getUsername();
             
             // Generate JWT tokens
             String accessToken = jwtTokenProvider.generateToken(username);
@@ -164,28 +169,37 @@ public class AuthenticationService {
 
     /**
      * Refresh JWT token
-     * Validates refresh token and returns new access token
+     * Rotates the refresh token: the one presented is revoked and a new pair is returned,
+     * so each refresh token works once. Revocations and the user are checked in memory.
      */
     public AuthResponse refreshToken(String refreshToken) {
         logger.debug("Attempting to refresh token");
         
-        if (refreshToken == null || !jwtTokenProvider.validateRefreshToken(refreshToken)) {
+        Claims claims = refreshToken == null ? null : jwtTokenProvider.verifyRefreshToken(refreshToken);
+        // Refresh tokens issued before rotation carry no id and cannot be revoked, so they are refused
+        if (claims == null || claims.getId() == null || refreshTokenRevocations.isRevoked(claims.getId())) {
             throw new UnauthorizedException("Invalid or expired refresh token");
         }
         
-        String username = jwtTokenProvider.getUsernameFromToken(refreshToken);
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        
-        if (userOptional.isEmpty()) {
+        UserPrincipal user;
+        try {
+            user = userDetailsService.loadUserForToken(claims.getSubject());
+        } catch (UsernameNotFoundException e) {
             throw new UnauthorizedException("User not found");
         }
         
-        User user = userOptional.get();
-        String newAccessToken = jwtTokenProvider.generateToken(username);
+        // Only one of several concurrent refreshes with the same token gets through
+        if (!refreshTokenRevocations.revoke(claims.getId(), claims.getExpiration().getTime())) {
+            logger.warn("Refresh token reused for user: {}", user.getUsername());
+            throw new UnauthorizedException("Invalid or expired refresh token");
+        }
+        
+        String newAccessToken = jwtTokenProvider.generateToken(user.getUsername());
+        String newRefreshToken = jwtTokenProvider.generateRefreshToken(user.getUsername());
         
         return new AuthResponse(
                 newAccessToken,
-                refreshToken,
+                newRefreshToken,
                 "Bearer",
                 jwtTokenProvider.getExpirationMs(),
                 user.getUsername(),
@@ -193,6 +207,17 @@ public class AuthenticationService {
         );
     }
 
+    /**
+     * Logout
+     * Revokes the refresh token, if one is given and still valid; access tokens expire on their own
+     */
+    public void logout(String refreshToken) {
+        Claims claims = refreshToken == null ? null : jwtTokenProvider.verifyRefreshToken(refreshToken);
+        if (claims != null && claims.getId() != null) {
+            refreshTokenRevocations.revoke(claims.getId(), claims.getExpiration().getTime());
+        }
+    }
+
     /**
      * Validate email format
      */
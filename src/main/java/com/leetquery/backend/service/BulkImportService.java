@@ -0,0 +1,552 @@
+package com.leetquery.backend.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.ImportResponse;
+import com.leetquery.backend.model.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads problems or tutorial challenges in bulk from a JSON array or a CSV upload.
+ *
+ * The upload is parsed one row at a time and valid rows are inserted with JDBC batches,
+ * all in one transaction. A row that fails validation or violates a constraint is reported
+ * and skipped; the rest of the load goes on. Stage order numbers are resolved against the
+ * catalog in memory, and the catalog is rebuilt once at the end.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkImportService {
+
+    private static final String INSERT_PROBLEM =
+            "INSERT INTO problems (stage_id, title, description, expected_query, change_version) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String INSERT_CHALLENGE =
+            "INSERT INTO challenges (level_id, stage_number, stage_title, difficulty, description, expected_query, " +
+            "hint, relational_algebra_hint, success_message, challenge_type, change_version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Set<String> DIFFICULTIES = Set.of("EASY", "MEDIUM", "HARD");
+    private static final Set<String> CHALLENGE_TYPES = Set.of("DQL", "DML", "DDL");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final CatalogService catalogService;
+
+    @Value("${app.admin.import.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.admin.import.max-rows:10000}")
+    private int maxRows;
+
+    @Value("${app.admin.import.max-reported-errors:100}")
+    private int maxReportedErrors;
+
+    /**
+     * @param type "problems" or "challenges"
+     * @param contentType media type of the upload; CSV when it names csv, a JSON array otherwise
+     * @throws ValidationException for an unknown type or an upload that does not start like one
+     */
+    public ImportResponse importRows(String type, InputStream body, String contentType) throws IOException {
+        Target target = Target.of(type);
+        RowSource rows = isCsv(contentType)
+                ? new CsvRows(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)))
+                : new JsonRows(objectMapper.getFactory().createParser(body));
+
+        // Every row of one import shares a change version
+        Load load = new Load(target, stageIdsByOrderNo(), catalogService.nextChangeVersion());
+        long started = System.nanoTime();
+        try (rows) {
+            jdbcTemplate.execute((Connection connection) -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(target.sql)) {
+                    load.run(connection, insert, rows);
+                    connection.commit();
+                    return null;
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        }
+
+        if (load.inserted > 0) {
+            catalogService.refresh();
+        }
+        // Constraint violations surface when a batch is flushed, after later rows were validated
+        load.errors.sort(Comparator.comparingInt(ImportResponse.RowError::getRow));
+        log.info("Imported {} of {} {} row(s) in {} ms, {} failed", load.inserted, load.rowsRead, target.name,
+                (System.nanoTime() - started) / 1_000_000, load.failed);
+
+        return ImportResponse.builder()
+                .success(load.failed == 0)
+                .type(target.name)
+                .rowsRead(load.rowsRead)
+                .inserted(load.inserted)
+                .failed(load.failed)
+                .errors(load.errors)
+                .message(load.stopped != null ? load.stopped
+                        : load.inserted + " of " + load.rowsRead + " row(s) imported")
+                .build();
+    }
+
+    private Map<Integer, Integer> stageIdsByOrderNo() {
+        Map<Integer, Integer> ids = new HashMap<>();
+        for (Stage stage : catalogService.snapshot().getStages()) {
+            ids.putIfAbsent(stage.getOrderNo(), stage.getId());
+        }
+        return ids;
+    }
+
+    private static boolean isCsv(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("csv");
+    }
+
+    /**
+     * Field names are matched loosely, so stageOrder, stage_order and "Stage Order" are the same column
+     */
+    private static String normalize(String field) {
+        StringBuilder key = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                key.append(Character.toLowerCase(c));
+            }
+        }
+        return key.toString();
+    }
+
+    private enum Target {
+        PROBLEMS("problems", INSERT_PROBLEM),
+        CHALLENGES("challenges", INSERT_CHALLENGE);
+
+        private final String name;
+        private final String sql;
+
+        Target(String name, String sql) {
+            this.name = name;
+            this.sql = sql;
+        }
+
+        static Target of(String type) {
+            for (Target target : values()) {
+                if (target.name.equalsIgnoreCase(type)) {
+                    return target;
+                }
+            }
+            throw new ValidationException("Unknown import type: " + type + " (expected problems or challenges)");
+        }
+    }
+
+    /**
+     * State of one import: the pending batch and the running counts
+     */
+    private final class Load {
+        private final Target target;
+        private final Map<Integer, Integer> stageIds;
+        private final long changeVersion;
+        private final List<Pending> batch = new ArrayList<>();
+        private final List<ImportResponse.RowError> errors = new ArrayList<>();
+        private int rowsRead;
+        private int inserted;
+        private int failed;
+        private String stopped;
+
+        private Load(Target target, Map<Integer, Integer> stageIds, long changeVersion) {
+            this.target = target;
+            this.stageIds = stageIds;
+            this.changeVersion = changeVersion;
+        }
+
+        void run(Connection connection, PreparedStatement insert, RowSource rows) throws SQLException {
+            while (true) {
+                Map<String, String> row;
+                try {
+                    row = rows.next();
+                } catch (ValidationException e) {
+                    // A malformed row that was still read completely; carry on with the next one
+                    if (!countRow()) {
+                        break;
+                    }
+                    fail(rowsRead, e.getMessage());
+                    continue;
+                } catch (IOException | RowException e) {
+                    // The stream cannot be resynchronised; keep what was read so far
+                    fail(rowsRead + 1, e.getMessage());
+                    stopped = "Upload unreadable after row " + rowsRead + "; earlier rows were imported";
+                    break;
+                }
+                if (row == null || !countRow()) {
+                    break;
+                }
+
+                try {
+                    batch.add(new Pending(rowsRead, target == Target.PROBLEMS ? problem(row) : challenge(row)));
+                } catch (ValidationException e) {
+                    fail(rowsRead, e.getMessage());
+                }
+                if (batch.size() >= batchSize) {
+                    flush(connection, insert);
+                }
+            }
+            flush(connection, insert);
+        }
+
+        private boolean countRow() {
+            if (rowsRead == maxRows) {
+                stopped = "Upload has more than " + maxRows + " row(s); the rest was not imported";
+                return false;
+            }
+            rowsRead++;
+            return true;
+        }
+
+        /**
+         * Inserts the pending rows as one batch. If the batch fails, it is rolled back and the rows
+         * are retried one by one so the failing ones can be reported and the others kept.
+         */
+        private void flush(Connection connection, PreparedStatement insert) throws SQLException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                for (Pending pending : batch) {
+                    bind(insert, pending.params);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                connection.releaseSavepoint(savepoint);
+                inserted += batch.size();
+            } catch (SQLException e) {
+                insert.clearBatch();
+                connection.rollback(savepoint);
+                for (Pending pending : batch) {
+                    insertOne(connection, insert, pending);
+                }
+            }
+            batch.clear();
+        }
+
+        private void insertOne(Connection connection, PreparedStatement insert, Pending pending) throws SQLException {
+            Savepoint savepoint = connection.setSavepoint();
+            try {
+                bind(insert, pending.params);
+                insert.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+                inserted++;
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                fail(pending.row, e.getMessage());
+            }
+        }
+
+        private void bind(PreparedStatement insert, Object[] params) throws SQLException {
+            for (int i = 0; i < params.length; i++) {
+                insert.setObject(i + 1, params[i]);
+            }
+        }
+
+        private void fail(int row, String error) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ImportResponse.RowError(row, error));
+            }
+        }
+
+        private Object[] problem(Map<String, String> row) {
+            Fields fields = new Fields(row);
+            int stageOrder = fields.integer("stageOrder", null);
+            Integer stageId = stageIds.get(stageOrder);
+            if (stageId == null) {
+                throw new ValidationException("Stage not found for order_no: " + stageOrder);
+            }
+            return new Object[] {
+                    stageId,
+                    fields.required("title", 255),
+                    fields.optional("description", 5000),
+                    fields.required("expectedQuery", 10000),
+                    changeVersion
+            };
+        }
+
+        private Object[] challenge(Map<String, String> row) {
+            Fields fields = new Fields(row);
+            return new Object[] {
+                    fields.integer("levelId", 0),
+                    fields.integer("stageNumber", null),
+                    fields.required("stageTitle", 255),
+                    fields.oneOf("difficulty", DIFFICULTIES, null),
+                    fields.required("description", 5000),
+                    fields.required("expectedQuery", 10000),
+                    fields.optional("hint", 5000),
+                    fields.optional("relationalAlgebraHint", 5000),
+                    fields.required("successMessage", 5000),
+                    fields.oneOf("challengeType", CHALLENGE_TYPES, "DQL"),
+                    changeVersion
+            };
+        }
+    }
+
+    private record Pending(int row, Object[] params) {
+    }
+
+    /**
+     * Typed access to one row, failing with the field name on bad or missing values
+     */
+    private static final class Fields {
+        private final Map<String, String> row;
+
+        private Fields(Map<String, String> row) {
+            this.row = row;
+        }
+
+        String optional(String field, int maxLength) {
+            String value = row.get(normalize(field));
+            if (value == null || value.isBlank()) {
+                return null;
+            }
+            if (value.length() > maxLength) {
+                throw new ValidationException(field + " is longer than " + maxLength + " characters");
+            }
+            return value;
+        }
+
+        String required(String field, int maxLength) {
+            String value = optional(field, maxLength);
+            if (value == null) {
+                throw new ValidationException(field + " is required");
+            }
+            return value;
+        }
+
+        int integer(String field, Integer defaultValue) {
+            String value = optional(field, 20);
+            if (value == null) {
+                if (defaultValue == null) {
+                    throw new ValidationException(field + " is required");
+                }
+                return defaultValue;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new ValidationException(field + " must be a whole number: " + value);
+            }
+        }
+
+        String oneOf(String field, Set<String> allowed, String defaultValue) {
+            String value = optional(field, 20);
+            if (value == null) {
+                if (defaultValue == null) {
+                    throw new ValidationException(field + " is required");
+                }
+                return defaultValue;
+            }
+            String upper = value.trim().toUpperCase(Locale.ROOT);
+            if (!allowed.contains(upper)) {
+                throw new ValidationException(field + " must be one of " + allowed + ": " + value);
+            }
+            return upper;
+        }
+    }
+
+    /**
+     * A row that cannot be read; the rest of the stream is not trusted after one
+     */
+    private static final class RowException extends RuntimeException {
+        private RowException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Rows of an upload with normalized field names; next() returns null at the end
+     */
+    private interface RowSource extends AutoCloseable {
+        Map<String, String> next() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static final class JsonRows implements RowSource {
+        private final JsonParser parser;
+
+        private JsonRows(JsonParser parser) throws IOException {
+            this.parser = parser;
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.close();
+                throw new ValidationException("Expected a JSON array of rows");
+            }
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                throw new ValidationException("Expected a JSON object, found " + token);
+            }
+
+            // Only this row is materialized
+            JsonNode node = parser.readValueAsTree();
+            Map<String, String> row = new HashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = field.getValue();
+                row.put(normalize(field.getKey()), value.isNull() ? null
+                        : value.isValueNode() ? value.asText() : value.toString());
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV: a header row naming the fields, quoted values may hold commas, quotes and newlines
+     */
+    private static final class CsvRows implements RowSource {
+        private final Reader reader;
+        private List<String> header;
+        private int peeked = -2;
+
+        private CsvRows(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                List<String> names = record();
+                if (names == null) {
+                    return null;
+                }
+                header = new ArrayList<>(names.size());
+                for (String name : names) {
+                    header.add(normalize(name));
+                }
+            }
+            List<String> values = record();
+            if (values == null) {
+                return null;
+            }
+            if (values.size() != header.size()) {
+                // The record itself was read completely, so later rows are still fine
+                throw new ValidationException("Expected " + header.size() + " value(s), found " + values.size());
+            }
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                row.put(header.get(i), values.get(i));
+            }
+            return row;
+        }
+
+        /**
+         * Reads one record, skipping blank lines; null at the end of the input
+         */
+        private List<String> record() throws IOException {
+            int c = read();
+            while (c == '\r' || c == '\n') {
+                c = read();
+            }
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new RowException("Unterminated quoted value");
+                    }
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            value.append('"');
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        value.append((char) c);
+                    }
+                } else if (c == '"' && value.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    values.add(value.toString());
+                    return values;
+                } else {
+                    value.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) {
+                int c = peeked;
+                peeked = -2;
+                return c;
+            }
+            return reader.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = reader.read();
+            }
+            return peeked;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
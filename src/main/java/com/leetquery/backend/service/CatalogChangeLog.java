@@ -0,0 +1,221 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.model.CatalogChange;
+import com.leetquery.backend.model.CatalogChanges;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.Problem;
+import com.leetquery.backend.model.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Row-level change log of the catalog, answering "what changed since version N" for delta sync.
+ *
+ * Each CatalogRefreshedEvent is diffed against the rows seen so far. A row counts as changed at
+ * its stored change_version, which the admin write paths stamp, as long as that version is
+ * newer than anything already published. Versions are reserved before the write commits, so a
+ * slow write (a bulk import) can land with a version below one a client has already synced to;
+ * such rows, rows edited behind the admin paths' back and rows that disappeared get a fresh
+ * version when the diff notices them. After every refresh the log is rebuilt as an immutable
+ * list sorted by version, so a delta is a binary search plus the rows after it. Deletions from
+ * before this process started are unknown, so clients syncing from an older version also get
+ * the ids of every live row and drop the rest.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogChangeLog {
+
+    public static final String STAGE = "stage";
+    public static final String PROBLEM = "problem";
+    public static final String CHALLENGE = "challenge";
+    public static final String SCHEMA = "schema";
+
+    private static final Comparator<CatalogChange> ORDER = Comparator.comparingLong(CatalogChange::getVersion)
+            .thenComparing(CatalogChange::getType)
+            .thenComparingLong(CatalogChange::getId);
+
+    private final CatalogService catalogService;
+
+    private volatile View view;
+
+    @EventListener
+    public synchronized void onCatalogRefreshed(CatalogRefreshedEvent event) {
+        view = update(view, event.snapshot());
+    }
+
+    /**
+     * Rows changed after since, or every live row when since is null
+     */
+    public CatalogChanges changesSince(Long since) {
+        View current = view();
+        if (since == null) {
+            List<CatalogChange> rows = new ArrayList<>();
+            for (CatalogChange change : current.changes()) {
+                if (change.getDeleted() == null) {
+                    rows.add(change);
+                }
+            }
+            return CatalogChanges.builder().version(current.version()).changes(rows).build();
+        }
+
+        // A version from before this process, or from another database, may have missed deletions
+        boolean resync = since < current.floor() || since > current.version();
+        long after = since > current.version() ? -1 : since;
+        List<CatalogChange> changes = current.changes();
+        int start = firstAfter(changes, after);
+        return CatalogChanges.builder()
+                .version(current.version())
+                .changes(List.copyOf(changes.subList(start, changes.size())))
+                .liveIds(resync ? current.liveIds() : null)
+                .build();
+    }
+
+    private View view() {
+        View current = view;
+        if (current == null) {
+            // Loading the catalog publishes the event that builds the first view
+            catalogService.snapshot();
+            current = view;
+        }
+        return current;
+    }
+
+    private View update(View previous, CatalogSnapshot catalog) {
+        Map<String, CatalogChange> rows = rows(catalog);
+        Map<String, Long> stored = new HashMap<>();
+        rows.forEach((key, row) -> stored.put(key, row.getVersion()));
+        Map<String, CatalogChange> latest;
+        long floor;
+        if (previous == null) {
+            latest = rows;
+            floor = catalog.getMaxChangeVersion();
+        } else {
+            latest = new HashMap<>();
+            floor = previous.floor();
+            Long unstamped = null;
+            for (Map.Entry<String, CatalogChange> entry : rows.entrySet()) {
+                CatalogChange row = entry.getValue();
+                CatalogChange before = previous.latest().get(entry.getKey());
+                if (before != null && before.getDeleted() == null
+                        && Objects.equals(previous.stored().get(entry.getKey()), row.getVersion())
+                        && Objects.equals(before.getData(), row.getData())
+                        && Objects.equals(before.getLevelId(), row.getLevelId())) {
+                    latest.put(entry.getKey(), before);
+                } else if (row.getVersion() > previous.version()) {
+                    latest.put(entry.getKey(), row);
+                } else {
+                    // Changed without a version newer than the published one: edited by hand in the
+                    // database, or committed after a later-reserved version was already published
+                    unstamped = unstamped != null ? unstamped : catalogService.nextChangeVersion();
+                    row.setVersion(unstamped);
+                    latest.put(entry.getKey(), row);
+                }
+            }
+            for (Map.Entry<String, CatalogChange> entry : previous.latest().entrySet()) {
+                CatalogChange before = entry.getValue();
+                if (rows.containsKey(entry.getKey())) {
+                    continue;
+                }
+                if (before.getDeleted() != null) {
+                    latest.put(entry.getKey(), before);
+                } else {
+                    unstamped = unstamped != null ? unstamped : catalogService.nextChangeVersion();
+                    latest.put(entry.getKey(), CatalogChange.builder()
+                            .type(before.getType())
+                            .id(before.getId())
+                            .levelId(before.getLevelId())
+                            .version(unstamped)
+                            .deleted(true)
+                            .build());
+                }
+            }
+        }
+
+        List<CatalogChange> changes = new ArrayList<>(latest.values());
+        changes.sort(ORDER);
+        long version = Math.max(catalog.getMaxChangeVersion(),
+                changes.isEmpty() ? 0 : changes.get(changes.size() - 1).getVersion());
+        log.debug("Catalog change log at version {}: {} row(s)", version, changes.size());
+        return new View(floor, version, List.copyOf(changes), latest, stored, liveIds(rows));
+    }
+
+    private static Map<String, CatalogChange> rows(CatalogSnapshot catalog) {
+        Map<String, CatalogChange> rows = new HashMap<>();
+        for (Stage stage : catalog.getStages()) {
+            put(rows, catalog, STAGE, stage.getId(), null, stage);
+            for (Problem problem : catalog.getProblemsByStage(stage.getId())) {
+                put(rows, catalog, PROBLEM, problem.getId(), null, problem);
+            }
+        }
+        for (int levelId : catalog.getLevels()) {
+            for (Challenge challenge : catalog.getChallenges(levelId)) {
+                put(rows, catalog, CHALLENGE, challenge.getId(), levelId, challenge);
+            }
+        }
+        for (int levelId : catalog.getSchemaLevels()) {
+            put(rows, catalog, SCHEMA, levelId, null, catalog.getSchema(levelId));
+        }
+        return rows;
+    }
+
+    private static void put(Map<String, CatalogChange> rows, CatalogSnapshot catalog, String type, long id,
+                            Integer levelId, Object data) {
+        rows.put(CatalogSnapshot.changeKey(type, id), CatalogChange.builder()
+                .type(type)
+                .id(id)
+                .levelId(levelId)
+                .version(catalog.getChangeVersion(type, id))
+                .data(data)
+                .build());
+    }
+
+    private static Map<String, List<Long>> liveIds(Map<String, CatalogChange> rows) {
+        Map<String, List<Long>> ids = new LinkedHashMap<>();
+        for (String type : List.of(STAGE, PROBLEM, CHALLENGE, SCHEMA)) {
+            ids.put(type, new ArrayList<>());
+        }
+        for (CatalogChange row : rows.values()) {
+            ids.get(row.getType()).add(row.getId());
+        }
+        ids.replaceAll((type, list) -> list.stream().sorted().toList());
+        return ids;
+    }
+
+    /**
+     * Index of the first change with a version above after
+     */
+    private static int firstAfter(List<CatalogChange> changes, long after) {
+        int low = 0;
+        int high = changes.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (changes.get(mid).getVersion() <= after) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param floor versions below this may have missed deletions
+     * @param changes latest change per row, in version order
+     * @param latest the same changes by row key
+     * @param stored the change_version each live row has in the database, which re-stamping leaves alone
+     */
+    private record View(long floor, long version, List<CatalogChange> changes, Map<String, CatalogChange> latest,
+                        Map<String, Long> stored, Map<String, List<Long>> liveIds) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.leetquery.backend.service;
+
+import java.util.List;
+
+/**
+ * One page of a catalog listing
+ * @param items the rows of this page, in listing order
+ * @param total number of rows in the whole listing
+ * @param nextCursor value for after= to fetch the next page, or null on the last page
+ */
+public record CatalogPage<T>(List<T> items, int total, String nextCursor) {
+}
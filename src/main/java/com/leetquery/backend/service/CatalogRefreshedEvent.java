@@ -0,0 +1,7 @@
+package com.leetquery.backend.service;
+
+/**
+ * Published after a new catalog snapshot has been swapped in
+ */
+public record CatalogRefreshedEvent(CatalogSnapshot snapshot) {
+}
@@ -0,0 +1,175 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.Problem;
+import com.leetquery.backend.model.Stage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the learning content from an in-memory CatalogSnapshot.
+ *
+ * The snapshot is loaded once the database initializer has seeded the content and rebuilt
+ * after every content write. A rebuild reads everything into a new snapshot and then swaps
+ * the reference, so readers never block and never see a partial catalog.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogService {
+
+    // Stages with their problems in one round trip; stages without problems come back once with NULLs
+    private static final String STAGES_SQL =
+            "SELECT s.id AS stage_id, s.title AS stage_title, s.description AS stage_description, s.order_no, " +
+            "s.change_version AS stage_version, p.id AS problem_id, p.title AS problem_title, " +
+            "p.description AS problem_description, p.expected_query, p.expected_row_count, p.expected_fingerprint, " +
+            "p.expected_columns, p.expected_execution_ms, p.change_version AS problem_version " +
+            "FROM stages s LEFT JOIN problems p ON p.stage_id = s.id ORDER BY s.order_no, s.id, p.id";
+
+    private static final String CHALLENGES_SQL =
+            "SELECT id, level_id, stage_number, stage_title, difficulty, description, expected_query, hint, " +
+            "relational_algebra_hint, success_message, challenge_type, change_version FROM challenges " +
+            "ORDER BY level_id, stage_number, " +
+            "CASE difficulty WHEN 'EASY' THEN 1 WHEN 'MEDIUM' THEN 2 WHEN 'HARD' THEN 3 ELSE 4 END, id";
+
+    private static final String SCHEMA_SQL = "SELECT level_id, schema_info, change_version FROM tutorial_schema ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Versions restart with the process, so ETags also carry the start time
+    private final String instance = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+    // Highest change_version handed out or loaded; unlike version it is stored with the rows
+    private final AtomicLong changeVersion = new AtomicLong();
+
+    private volatile CatalogSnapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refresh();
+    }
+
+    /**
+     * The current catalog; loaded on first use if startup has not loaded it yet
+     */
+    public CatalogSnapshot snapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = refresh();
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reserves the change_version an admin write stamps on the rows it inserts or updates
+     */
+    public long nextChangeVersion() {
+        // The first snapshot seeds the counter from the stored rows
+        snapshot();
+        return changeVersion.incrementAndGet();
+    }
+
+    /**
+     * Rebuilds the catalog from the database and swaps it in under a new content version.
+     * Call after every content write. Listeners of CatalogRefreshedEvent have seen the new
+     * snapshot by the time this returns.
+     */
+    public synchronized CatalogSnapshot refresh() {
+        long started = System.nanoTime();
+        List<Stage> stages = new ArrayList<>();
+        Map<Integer, List<Problem>> problems = new LinkedHashMap<>();
+        Map<String, Long> changeVersions = new HashMap<>();
+        loadStagesWithProblems(stages, problems, changeVersions);
+        Map<Integer, List<Challenge>> challenges = loadChallenges(changeVersions);
+        Map<Integer, String> schemas = loadSchemas(changeVersions);
+
+        long nextVersion = version.incrementAndGet();
+        CatalogSnapshot next = new CatalogSnapshot(nextVersion, "\"catalog-" + instance + "-" + nextVersion + "\"",
+                stages, problems, challenges, schemas, changeVersions);
+        changeVersion.accumulateAndGet(next.getMaxChangeVersion(), Math::max);
+        snapshot = next;
+        log.info("Catalog version {} loaded: {} stage(s), {} level(s) in {} ms", nextVersion, stages.size(),
+                challenges.size(), (System.nanoTime() - started) / 1_000_000);
+        eventPublisher.publishEvent(new CatalogRefreshedEvent(next));
+        return next;
+    }
+
+    private void loadStagesWithProblems(List<Stage> stages, Map<Integer, List<Problem>> problems,
+                                        Map<String, Long> changeVersions) {
+        jdbcTemplate.query(STAGES_SQL, rs -> {
+            int stageId = rs.getInt("stage_id");
+            if (stages.isEmpty() || stages.get(stages.size() - 1).getId() != stageId) {
+                stages.add(new Stage(stageId, rs.getString("stage_title"),
+                        rs.getString("stage_description"), rs.getInt("order_no")));
+                problems.put(stageId, new ArrayList<>());
+                changeVersions.put(CatalogSnapshot.changeKey(CatalogChangeLog.STAGE, stageId), rs.getLong("stage_version"));
+            }
+            int problemId = rs.getInt("problem_id");
+            if (!rs.wasNull()) {
+                problems.get(stageId).add(new Problem(problemId, stageId, rs.getString("problem_title"),
+                        rs.getString("problem_description"), rs.getString("expected_query"),
+                        rs.getObject("expected_row_count", Integer.class), rs.getString("expected_fingerprint"),
+                        rs.getString("expected_columns"), rs.getObject("expected_execution_ms", Long.class)));
+                changeVersions.put(CatalogSnapshot.changeKey(CatalogChangeLog.PROBLEM, problemId),
+                        rs.getLong("problem_version"));
+            }
+        });
+    }
+
+    private Map<Integer, List<Challenge>> loadChallenges(Map<String, Long> changeVersions) {
+        Map<Integer, List<Challenge>> challenges = new LinkedHashMap<>();
+        jdbcTemplate.query(CHALLENGES_SQL, rs -> {
+            Challenge challenge = new Challenge();
+            challenge.setId(rs.getLong("id"));
+            challenge.setStageNumber(rs.getInt("stage_number"));
+            challenge.setStageTitle(rs.getString("stage_title"));
+            challenge.setDifficulty(rs.getString("difficulty"));
+            challenge.setDescription(rs.getString("description"));
+            challenge.setExpectedQuery(rs.getString("expected_query"));
+            challenge.setHint(rs.getString("hint"));
+            challenge.setRelationalAlgebraHint(rs.getString("relational_algebra_hint"));
+            challenge.setSuccessMessage(rs.getString("success_message"));
+            challenge.setChallengeType(rs.getString("challenge_type"));
+            challenges.computeIfAbsent(rs.getInt("level_id"), level -> new ArrayList<>()).add(challenge);
+            changeVersions.put(CatalogSnapshot.changeKey(CatalogChangeLog.CHALLENGE, challenge.getId()),
+                    rs.getLong("change_version"));
+        });
+        return challenges;
+    }
+
+    private Map<Integer, String> loadSchemas(Map<String, Long> changeVersions) {
+        Map<Integer, String> schemas = new HashMap<>();
+        try {
+            jdbcTemplate.query(SCHEMA_SQL, rs -> {
+                // First row per level wins, like the LIMIT 1 lookup it replaces
+                String schema = rs.getString("schema_info");
+                int levelId = rs.getInt("level_id");
+                if (schema != null && schemas.putIfAbsent(levelId, schema) == null) {
+                    changeVersions.put(CatalogSnapshot.changeKey(CatalogChangeLog.SCHEMA, levelId),
+                            rs.getLong("change_version"));
+                }
+            });
+        } catch (Exception e) {
+            log.warn("tutorial_schema unavailable: {}", e.getMessage());
+        }
+        return schemas;
+    }
+}
@@ -0,0 +1,328 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.dto.ProblemResponse;
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.dto.StageResponse;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.Problem;
+import com.leetquery.backend.model.Stage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the learning content: stages, problems, tutorial challenges and schema text.
+ * Built in one go by CatalogService and swapped in whole, so readers never see a half-built
+ * catalog. The model objects are shared between requests and must not be modified.
+ *
+ * Listings can also be read a page at a time. Pages are keyset based: the cursor holds the
+ * sort key of the last row returned, and the next page starts after it by binary search, so
+ * paging stays stable when rows are added or removed between requests.
+ */
+public final class CatalogSnapshot {
+
+    // Same orders the listings are loaded in
+    private static final Comparator<Stage> STAGE_ORDER =
+            Comparator.comparingInt(Stage::getOrderNo).thenComparingInt(Stage::getId);
+    private static final Comparator<Problem> PROBLEM_ORDER = Comparator.comparingInt(Problem::getId);
+    private static final Comparator<Challenge> CHALLENGE_ORDER =
+            Comparator.comparingInt(Challenge::getStageNumber)
+                    .thenComparingInt(challenge -> difficultyRank(challenge.getDifficulty()))
+                    .thenComparingLong(Challenge::getId);
+
+    private final long version;
+    private final String etag;
+    private final List<Stage> stages;
+    private final Map<Integer, Stage> stagesById;
+    private final Map<Integer, Stage> stagesByOrderNo;
+    private final Map<Integer, Problem> problemsById;
+    private final Map<Integer, List<Problem>> problemsByStageId;
+    private final List<StageResponse> stageResponses;
+    private final Map<Integer, List<Challenge>> challengesByLevel;
+    private final Map<Long, Challenge> challengesById;
+    private final Map<Long, Integer> levelOfChallenge;
+    private final Map<Integer, String> schemaByLevel;
+    private final Map<String, Long> changeVersions;
+    private final long maxChangeVersion;
+
+    /**
+     * @param stages stages in order_no order
+     * @param problems problems grouped by stage, each group in id order
+     * @param challenges challenges per level in play order
+     * @param schemaByLevel schema description per level
+     * @param changeVersions change_version per row, keyed by changeKey
+     */
+    CatalogSnapshot(long version, String etag, List<Stage> stages, Map<Integer, List<Problem>> problems,
+                    Map<Integer, List<Challenge>> challenges, Map<Integer, String> schemaByLevel,
+                    Map<String, Long> changeVersions) {
+        Map<Integer, Stage> byId = new LinkedHashMap<>();
+        Map<Integer, Stage> byOrderNo = new LinkedHashMap<>();
+        List<StageResponse> responses = new ArrayList<>(stages.size());
+        for (Stage stage : stages) {
+            byId.put(stage.getId(), stage);
+            byOrderNo.putIfAbsent(stage.getOrderNo(), stage);
+
+            List<ProblemResponse> problemResponses = new ArrayList<>();
+            for (Problem problem : problems.getOrDefault(stage.getId(), List.of())) {
+                problemResponses.add(new ProblemResponse(problem.getId(), problem.getTitle(), problem.getDescription()));
+            }
+            responses.add(new StageResponse(stage.getOrderNo(), stage.getTitle(),
+                    Collections.unmodifiableList(problemResponses)));
+        }
+
+        Map<Integer, Problem> problemById = new LinkedHashMap<>();
+        Map<Integer, List<Problem>> problemsByStage = new LinkedHashMap<>();
+        problems.forEach((stageId, group) -> {
+            problemsByStage.put(stageId, List.copyOf(group));
+            for (Problem problem : group) {
+                problemById.put(problem.getId(), problem);
+            }
+        });
+
+        Map<Integer, List<Challenge>> byLevel = new LinkedHashMap<>();
+        Map<Long, Challenge> challengeById = new LinkedHashMap<>();
+        Map<Long, Integer> levelOf = new LinkedHashMap<>();
+        challenges.forEach((levelId, group) -> {
+            byLevel.put(levelId, List.copyOf(group));
+            for (Challenge challenge : group) {
+                challengeById.put(challenge.getId(), challenge);
+                levelOf.put(challenge.getId(), levelId);
+            }
+        });
+
+        this.version = version;
+        this.etag = etag;
+        this.stages = List.copyOf(stages);
+        this.stagesById = Collections.unmodifiableMap(byId);
+        this.stagesByOrderNo = Collections.unmodifiableMap(byOrderNo);
+        this.problemsById = Collections.unmodifiableMap(problemById);
+        this.problemsByStageId = Collections.unmodifiableMap(problemsByStage);
+        this.stageResponses = List.copyOf(responses);
+        this.challengesByLevel = Collections.unmodifiableMap(byLevel);
+        this.challengesById = Collections.unmodifiableMap(challengeById);
+        this.levelOfChallenge = Collections.unmodifiableMap(levelOf);
+        this.schemaByLevel = Map.copyOf(schemaByLevel);
+        this.changeVersions = Map.copyOf(changeVersions);
+        this.maxChangeVersion = changeVersions.values().stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    /**
+     * Content version; increases with every rebuild
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Highest change_version of any row
+     */
+    public long getMaxChangeVersion() {
+        return maxChangeVersion;
+    }
+
+    /**
+     * change_version of a row, 0 when it was never written by an admin path
+     * @param type one of the CatalogChangeLog row types
+     * @param id row id; the level id for schemas
+     */
+    public long getChangeVersion(String type, long id) {
+        return changeVersions.getOrDefault(changeKey(type, id), 0L);
+    }
+
+    static String changeKey(String type, long id) {
+        return type + ":" + id;
+    }
+
+    /**
+     * Strong entity tag shared by every catalog response built from this snapshot
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * All stages in order_no order
+     */
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    public Stage getStage(int stageId) {
+        return stagesById.get(stageId);
+    }
+
+    public Stage getStageByOrderNo(int orderNo) {
+        return stagesByOrderNo.get(orderNo);
+    }
+
+    public Problem getProblem(int problemId) {
+        return problemsById.get(problemId);
+    }
+
+    /**
+     * Problems of a stage in id order; empty for unknown stages
+     */
+    public List<Problem> getProblemsByStage(int stageId) {
+        return problemsByStageId.getOrDefault(stageId, List.of());
+    }
+
+    /**
+     * The /problems payload: every stage with its problems, in stage order
+     */
+    public List<StageResponse> getStagesWithProblems() {
+        return stageResponses;
+    }
+
+    /**
+     * A page of the /problems payload; the cursor is "orderNo.stageId" of the last stage
+     */
+    public CatalogPage<StageResponse> pageStagesWithProblems(String after, int limit) {
+        int start = 0;
+        if (after != null) {
+            long[] key = parseCursor(after, 2);
+            start = indexAfter(stages, new Stage((int) key[1], null, null, (int) key[0]), STAGE_ORDER);
+        }
+        int end = end(start, limit, stages.size());
+        String next = end < stages.size() ? stages.get(end - 1).getOrderNo() + "." + stages.get(end - 1).getId() : null;
+        return new CatalogPage<>(stageResponses.subList(start, end), stages.size(), next);
+    }
+
+    /**
+     * A page of a stage's problems; the cursor is the id of the last problem
+     */
+    public CatalogPage<Problem> pageProblemsByStage(int stageId, String after, int limit) {
+        List<Problem> problems = getProblemsByStage(stageId);
+        int start = 0;
+        if (after != null) {
+            long[] key = parseCursor(after, 1);
+            start = indexAfter(problems, new Problem((int) key[0], stageId, null, null, null), PROBLEM_ORDER);
+        }
+        int end = end(start, limit, problems.size());
+        String next = end < problems.size() ? String.valueOf(problems.get(end - 1).getId()) : null;
+        return new CatalogPage<>(problems.subList(start, end), problems.size(), next);
+    }
+
+    /**
+     * A page of a level's challenges; the cursor is "stageNumber.difficultyRank.id" of the last challenge
+     */
+    public CatalogPage<Challenge> pageChallenges(int levelId, String after, int limit) {
+        List<Challenge> challenges = getChallenges(levelId);
+        int start = 0;
+        if (after != null) {
+            long[] key = parseCursor(after, 3);
+            Challenge probe = new Challenge();
+            probe.setStageNumber((int) key[0]);
+            probe.setDifficulty(difficultyOfRank((int) key[1]));
+            probe.setId(key[2]);
+            start = indexAfter(challenges, probe, CHALLENGE_ORDER);
+        }
+        int end = end(start, limit, challenges.size());
+        String next = null;
+        if (end < challenges.size()) {
+            Challenge last = challenges.get(end - 1);
+            next = last.getStageNumber() + "." + difficultyRank(last.getDifficulty()) + "." + last.getId();
+        }
+        return new CatalogPage<>(challenges.subList(start, end), challenges.size(), next);
+    }
+
+    /**
+     * Levels that have challenges, in level order
+     */
+    public Set<Integer> getLevels() {
+        return challengesByLevel.keySet();
+    }
+
+    /**
+     * Challenges of a level in play order: stage, then EASY/MEDIUM/HARD, then id
+     */
+    public List<Challenge> getChallenges(int levelId) {
+        return challengesByLevel.getOrDefault(levelId, List.of());
+    }
+
+    public Challenge getChallenge(long challengeId) {
+        return challengesById.get(challengeId);
+    }
+
+    /**
+     * Level the challenge belongs to, or null for unknown challenges
+     */
+    public Integer getLevelOf(long challengeId) {
+        return levelOfChallenge.get(challengeId);
+    }
+
+    /**
+     * Levels that have a schema description, including levels without challenges
+     */
+    public Set<Integer> getSchemaLevels() {
+        return schemaByLevel.keySet();
+    }
+
+    /**
+     * Schema description shown for a level, or null if the level has none
+     */
+    public String getSchema(int levelId) {
+        return schemaByLevel.get(levelId);
+    }
+
+    /**
+     * Index of the first row ordered after the probe
+     */
+    private static <T> int indexAfter(List<T> rows, T probe, Comparator<? super T> order) {
+        int found = Collections.binarySearch(rows, probe, order);
+        return found >= 0 ? found + 1 : -found - 1;
+    }
+
+    private static int end(int start, int limit, int size) {
+        return (int) Math.min(size, (long) start + limit);
+    }
+
+    private static long[] parseCursor(String cursor, int parts) {
+        String[] values = cursor.split("\\.");
+        if (values.length != parts) {
+            throw new ValidationException("Invalid cursor: " + cursor);
+        }
+        long[] key = new long[parts];
+        try {
+            for (int i = 0; i < parts; i++) {
+                key[i] = Long.parseLong(values[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Invalid cursor: " + cursor);
+        }
+        return key;
+    }
+
+    private static int difficultyRank(String difficulty) {
+        if (difficulty == null) {
+            return 4;
+        }
+        switch (difficulty) {
+            case "EASY":
+                return 1;
+            case "MEDIUM":
+                return 2;
+            case "HARD":
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    private static String difficultyOfRank(int rank) {
+        switch (rank) {
+            case 1:
+                return "EASY";
+            case 2:
+                return "MEDIUM";
+            case 3:
+                return "HARD";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.model.ColumnarResult;
+
+import java.math.BigDecimal;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Accumulates ResultSet rows straight into primitive per-column arrays
+ */
+class ColumnarResultBuilder {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Accumulator[] accumulators;
+    private int size;
+    private long bytes;
+
+    ColumnarResultBuilder(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        accumulators = new Accumulator[columnCount];
+        for (int i = 1; i <= columnCount; i++) {
+            accumulators[i - 1] = Accumulator.forType(metaData.getColumnName(i), metaData.getColumnType(i),
+                    metaData.getColumnTypeName(i));
+        }
+    }
+
+    /**
+     * Reads the current row and returns the bytes it added
+     */
+    long append(ResultSet rs) throws SQLException {
+        long added = 0;
+        for (int i = 0; i < accumulators.length; i++) {
+            added += accumulators[i].read(rs, i + 1, size);
+        }
+        size++;
+        bytes += added;
+        return added;
+    }
+
+    /**
+     * Drops the most recently appended row
+     */
+    void removeLast(long rowBytes) {
+        size--;
+        bytes -= rowBytes;
+        for (Accumulator accumulator : accumulators) {
+            accumulator.nulls.clear(size);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    ColumnarResult build() {
+        List<ColumnarResult.Column> columns = new ArrayList<>(accumulators.length);
+        for (Accumulator accumulator : accumulators) {
+            columns.add(ColumnarResult.Column.builder()
+                    .name(accumulator.name)
+                    .type(accumulator.type)
+                    .values(accumulator.values(size))
+                    .nulls(accumulator.nulls.isEmpty()
+                            ? null
+                            : Base64.getEncoder().encodeToString(Arrays.copyOf(accumulator.nulls.toByteArray(), (size + 7) / 8)))
+                    .build());
+        }
+        return ColumnarResult.builder()
+                .columns(columns)
+                .byteSize(bytes)
+                .build();
+    }
+
+    /**
+     * Growable array for one column, specialised by JDBC type
+     */
+    private abstract static class Accumulator {
+        final String name;
+        final String type;
+        final BitSet nulls = new BitSet();
+
+        Accumulator(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        static Accumulator forType(String name, int sqlType, String typeName) {
+            String type;
+            try {
+                type = JDBCType.valueOf(sqlType).getName();
+            } catch (IllegalArgumentException e) {
+                type = typeName;
+            }
+
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return new LongAccumulator(name, type);
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return new DoubleAccumulator(name, type);
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    return new DecimalAccumulator(name, type);
+                case Types.BOOLEAN:
+                case Types.BIT:
+                    return new BooleanAccumulator(name, type);
+                default:
+                    return new StringAccumulator(name, type);
+            }
+        }
+
+        abstract long read(ResultSet rs, int column, int row) throws SQLException;
+
+        abstract Object values(int size);
+
+        static int grow(int capacity) {
+            return Math.max(INITIAL_CAPACITY, capacity * 2);
+        }
+    }
+
+    private static final class LongAccumulator extends Accumulator {
+        private long[] values = new long[0];
+
+        LongAccumulator(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        long read(ResultSet rs, int column, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            long value = rs.getLong(column);
+            if (rs.wasNull()) {
+                nulls.set(row);
+                value = 0;
+            }
+            values[row] = value;
+            return 8;
+        }
+
+        @Override
+        Object values(int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DoubleAccumulator extends Accumulator {
+        private double[] values = new double[0];
+
+        DoubleAccumulator(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        long read(ResultSet rs, int column, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            double value = rs.getDouble(column);
+            if (rs.wasNull()) {
+                nulls.set(row);
+                value = 0;
+            }
+            values[row] = value;
+            return 8;
+        }
+
+        @Override
+        Object values(int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class BooleanAccumulator extends Accumulator {
+        private boolean[] values = new boolean[0];
+
+        BooleanAccumulator(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        long read(ResultSet rs, int column, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            boolean value = rs.getBoolean(column);
+            if (rs.wasNull()) {
+                nulls.set(row);
+                value = false;
+            }
+            values[row] = value;
+            return 1;
+        }
+
+        @Override
+        Object values(int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class DecimalAccumulator extends Accumulator {
+        private BigDecimal[] values = new BigDecimal[0];
+
+        DecimalAccumulator(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        long read(ResultSet rs, int column, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            BigDecimal value = rs.getBigDecimal(column);
+            if (value == null) {
+                nulls.set(row);
+                return 0;
+            }
+            values[row] = value;
+            return value.precision() + 1;
+        }
+
+        @Override
+        Object values(int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Everything else keeps the text form the row format uses
+     */
+    private static final class StringAccumulator extends Accumulator {
+        private String[] values = new String[0];
+
+        StringAccumulator(String name, String type) {
+            super(name, type);
+        }
+
+        @Override
+        long read(ResultSet rs, int column, int row) throws SQLException {
+            if (row == values.length) {
+                values = Arrays.copyOf(values, grow(values.length));
+            }
+            Object value = rs.getObject(column);
+            if (value == null) {
+                nulls.set(row);
+                values[row] = null;
+                return 0;
+            }
+            String text = value.toString();
+            values[row] = text;
+            return text.length();
+        }
+
+        @Override
+        Object values(int size) {
+            return values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+}
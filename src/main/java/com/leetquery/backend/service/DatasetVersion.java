@@ -0,0 +1,88 @@
+package com.leetquery.backend.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks writes against one database (the shared database or a sandbox) so cached
+ * results can be keyed by the version of the data they were read from.
+ *
+ * DML bumps the version of each table it names. DDL can change what a name means
+ * (views, renames), so after the first DDL every write bumps a dataset-wide epoch instead.
+ * A snapshot copy shares the snapshot scope only until its first recorded write of any kind.
+ */
+public final class DatasetVersion {
+
+    /**
+     * Scope shared by every sandbox still identical to the tutorial snapshot
+     */
+    public static final String SNAPSHOT = "snapshot";
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final String id;
+    private final boolean snapshotCopy;
+    private final Map<String, Long> tableVersions = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private volatile boolean restructured;
+
+    /**
+     * @param name         database name, used in scope ids
+     * @param snapshotCopy whether the database starts as an exact copy of the tutorial snapshot
+     */
+    public DatasetVersion(String name, boolean snapshotCopy) {
+        this.id = name + "#" + INSTANCES.incrementAndGet();
+        this.snapshotCopy = snapshotCopy;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Scope a read of the given tables belongs to. Reads in a snapshot copy that has run
+     * nothing but plain reads share the snapshot scope across all sandboxes.
+     */
+    public String scopeFor(Set<String> tables) {
+        if (restructured) {
+            return id + "@" + epoch.get();
+        }
+
+        Map<String, Long> written = new TreeMap<>();
+        for (String table : tables) {
+            Long version = tableVersions.get(table);
+            if (version != null) {
+                written.put(table, version);
+            }
+        }
+        if (written.isEmpty()) {
+            // A write the lexer misattributed must not leak into the scope every sandbox shares
+            return snapshotCopy && tableVersions.isEmpty() ? SNAPSHOT : id;
+        }
+        return id + written;
+    }
+
+    /**
+     * Records a completed DML statement against the given tables
+     */
+    public void tablesWritten(Set<String> tables) {
+        if (restructured) {
+            epoch.incrementAndGet();
+            return;
+        }
+        for (String table : tables) {
+            tableVersions.merge(table, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * Records a completed DDL (or other schema-affecting) statement
+     */
+    public void structureChanged() {
+        restructured = true;
+        epoch.incrementAndGet();
+    }
+}
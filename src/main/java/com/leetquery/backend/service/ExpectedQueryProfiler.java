@@ -0,0 +1,101 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.QueryContext;
+import com.leetquery.backend.model.QueryProfile;
+import com.leetquery.backend.model.QueryResponse;
+import com.leetquery.backend.model.ResultFingerprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a problem's expected query when the problem is written, so broken or slow reference
+ * queries are refused up front instead of surfacing when learners hit them.
+ *
+ * The query runs once in a throwaway sandbox under the "content" budget tier, bypassing the
+ * result cache so the measured time is a real execution. Its row count, result fingerprint,
+ * column names and execution time are returned for storing with the problem.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExpectedQueryProfiler {
+
+    // '#' is not allowed in usernames, so profiling leases never collide with learner sandboxes
+    private static final String SCRATCH_OWNER_PREFIX = "#profile:";
+    private static final String TIER = "content";
+    // Width of problems.expected_columns
+    private static final int MAX_COLUMNS_LENGTH = 2000;
+
+    private final QueryExecutionService queryExecutionService;
+    private final SandboxManager sandboxManager;
+
+    private final AtomicLong scratchIds = new AtomicLong();
+
+    @Value("${app.admin.expected-query.max-ms:2000}")
+    private long maxMillis;
+
+    /**
+     * @return the profile, or null when sandboxes are disabled and the query cannot be run safely
+     * @throws ValidationException when the query fails, hits a budget limit or is slower than the latency budget
+     */
+    public QueryProfile profile(String expectedQuery) {
+        if (expectedQuery == null || expectedQuery.isBlank()) {
+            throw new ValidationException("Expected query cannot be blank");
+        }
+        if (!sandboxManager.isEnabled()) {
+            log.warn("Sandboxes are disabled; storing expected query without a profile");
+            return null;
+        }
+
+        String owner = SCRATCH_OWNER_PREFIX + scratchIds.incrementAndGet();
+        QueryContext scratch = QueryContext.builder().owner(owner).tier(TIER).bypassCache(true).build();
+        try {
+            // Lease the sandbox first so the timing below is the query alone
+            queryExecutionService.executeQuery("SELECT 1", scratch);
+
+            long started = System.nanoTime();
+            QueryResponse response;
+            try {
+                response = queryExecutionService.executeQuery(expectedQuery, scratch);
+            } catch (Exception e) {
+                throw new ValidationException("Expected query failed: " + e.getMessage(), e);
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            if (QueryGovernor.TIMEOUT.equals(response.getLimitHit()) || elapsedMs > maxMillis) {
+                throw new ValidationException("Expected query took longer than the " + maxMillis + " ms latency budget");
+            }
+            if (response.getLimitHit() != null) {
+                throw new ValidationException("Expected query exceeds the content budget: " + response.getMessage());
+            }
+            if (!response.isSuccess()) {
+                throw new ValidationException("Expected query failed: " + response.getMessage());
+            }
+
+            ResultFingerprint fingerprint = GradingService.fingerprint(response, null);
+            String columns = response.getHeaders() != null ? String.join(",", response.getHeaders()) : null;
+            if (columns != null && columns.length() > MAX_COLUMNS_LENGTH) {
+                columns = columns.substring(0, MAX_COLUMNS_LENGTH);
+            }
+            return QueryProfile.builder()
+                    .rowCount(response.getRowCount())
+                    .fingerprint(Long.toHexString(fingerprint.getRowHashSum()) + ":"
+                            + Long.toHexString(fingerprint.getRowHashXor()))
+                    .columns(columns)
+                    .executionMs(elapsedMs)
+                    .build();
+        } catch (ValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ValidationException("Expected query could not be profiled: " + e.getMessage(), e);
+        } finally {
+            queryExecutionService.resetSandbox(owner);
+        }
+    }
+}
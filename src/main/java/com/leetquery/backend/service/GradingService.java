@@ -0,0 +1,291 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.exception.ResourceNotFoundException;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.GradeResponse;
+import com.leetquery.backend.model.QueryContext;
+import com.leetquery.backend.model.QueryResponse;
+import com.leetquery.backend.model.ResultFingerprint;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Grades learner queries against a cached fingerprint of the challenge's expected result,
+ * so grading costs one query execution instead of two.
+ *
+ * Challenges in a level build on each other (create a table, insert rows, query them), so the
+ * expected result is computed in a scratch sandbox after replaying the earlier challenges'
+ * expected queries. Each fingerprint remembers the queries it was built from and is rebuilt
+ * when any of them changes. Submissions of signed-in learners are recorded in their progress.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GradingService {
+
+    // '#' is not allowed in usernames, so scratch leases never collide with learner sandboxes
+    private static final String SCRATCH_OWNER_PREFIX = "#grader:";
+    // Expected queries are authored content and get the same budget the profiler checks them against
+    private static final String SCRATCH_TIER = "content";
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    private final CatalogService catalogService;
+    private final QueryExecutionService queryExecutionService;
+    private final SandboxManager sandboxManager;
+    private final ProgressService progressService;
+
+    private final Map<Long, CachedFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final AtomicLong scratchIds = new AtomicLong();
+
+    /**
+     * Runs the learner's query once and compares it with the expected result of context.challengeId
+     */
+    public GradeResponse grade(String query, QueryContext context) {
+        Long challengeId = context.getChallengeId();
+        List<ChallengeStep> steps = loadSteps(challengeId);
+        ChallengeStep target = steps.get(steps.size() - 1);
+        ResultFingerprint expected = expectedFingerprint(challengeId, steps);
+
+        QueryResponse result;
+        long started = System.nanoTime();
+        try {
+            result = queryExecutionService.executeQuery(query, context);
+        } catch (SQLException | RuntimeException e) {
+            result = QueryResponse.builder()
+                    .success(false)
+                    .queryType("ERROR")
+                    .message(e.getMessage())
+                    .build();
+        }
+
+        String ungradeable = ungradeableReason(expected, result);
+        if (ungradeable != null) {
+            // Nothing was compared, so the submission counts neither way
+            return GradeResponse.builder()
+                    .challengeId(challengeId)
+                    .correct(false)
+                    .graded(false)
+                    .message(ungradeable)
+                    .result(result)
+                    .build();
+        }
+
+        boolean correct = result.isSuccess() && matches(expected, result);
+        if (context.getUserId() != null) {
+            progressService.recordSubmission(context.getUserId(), context.getOwner(), challengeId, correct,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+        return GradeResponse.builder()
+                .challengeId(challengeId)
+                .correct(correct)
+                .graded(true)
+                .message(correct ? target.successMessage : "Your result does not match the expected output")
+                .result(result)
+                .build();
+    }
+
+    /**
+     * Drops the cached fingerprint of one challenge
+     */
+    public void invalidate(Long challengeId) {
+        fingerprints.remove(challengeId);
+    }
+
+    /**
+     * Drops all cached fingerprints
+     */
+    public void invalidateAll() {
+        fingerprints.clear();
+    }
+
+    /**
+     * Earlier challenges of the same level in play order, ending with the requested one
+     */
+    private List<ChallengeStep> loadSteps(Long challengeId) {
+        CatalogSnapshot catalog = catalogService.snapshot();
+        Integer levelId = catalog.getLevelOf(challengeId);
+        if (levelId == null) {
+            throw new ResourceNotFoundException("Challenge not found: " + challengeId);
+        }
+
+        List<ChallengeStep> steps = new ArrayList<>();
+        for (Challenge challenge : catalog.getChallenges(levelId)) {
+            steps.add(new ChallengeStep(challenge.getId(), challenge.getExpectedQuery(),
+                    challenge.getSuccessMessage(), challenge.getChallengeType()));
+            if (challenge.getId().equals(challengeId)) {
+                break;
+            }
+        }
+        return steps;
+    }
+
+    private ResultFingerprint expectedFingerprint(Long challengeId, List<ChallengeStep> steps) {
+        List<String> content = new ArrayList<>(steps.size());
+        for (ChallengeStep step : steps) {
+            content.add(step.expectedQuery);
+        }
+
+        CachedFingerprint cached = fingerprints.get(challengeId);
+        if (cached != null && cached.content.equals(content)) {
+            return cached.fingerprint;
+        }
+
+        ResultFingerprint fingerprint = computeExpected(steps);
+        fingerprints.put(challengeId, new CachedFingerprint(content, fingerprint));
+        return fingerprint;
+    }
+
+    /**
+     * Replays the earlier steps in a scratch sandbox and fingerprints the last step's result
+     */
+    private ResultFingerprint computeExpected(List<ChallengeStep> steps) {
+        ChallengeStep target = steps.get(steps.size() - 1);
+        ResultFingerprint categoryOnly = new ResultFingerprint(target.challengeType, false, 0, 0, 0, 0);
+        if (target.expectedQuery == null || !sandboxManager.isEnabled()) {
+            return categoryOnly;
+        }
+
+        String owner = SCRATCH_OWNER_PREFIX + scratchIds.incrementAndGet();
+        QueryContext scratch = QueryContext.builder().owner(owner).tier(SCRATCH_TIER).build();
+        try {
+            for (ChallengeStep step : steps.subList(0, steps.size() - 1)) {
+                if (step.expectedQuery == null) {
+                    continue;
+                }
+                try {
+                    queryExecutionService.executeQuery(step.expectedQuery, scratch);
+                } catch (Exception e) {
+                    // Some expected queries use syntax the sandbox database lacks; later steps may still work
+                    log.debug("Replay of challenge {} failed: {}", step.id, e.getMessage());
+                }
+            }
+
+            QueryResponse expected = queryExecutionService.executeQuery(target.expectedQuery, scratch);
+            if (!expected.isSuccess() || expected.getLimitHit() != null) {
+                // A truncated expected result would mark every complete answer wrong
+                return categoryOnly;
+            }
+            return fingerprint(expected, target.challengeType);
+
+        } catch (Exception e) {
+            log.warn("Expected query of challenge {} failed, grading by statement type only: {}",
+                    target.id, e.getMessage());
+            return categoryOnly;
+        } finally {
+            queryExecutionService.resetSandbox(owner);
+        }
+    }
+
+    /**
+     * Why the result cannot be compared with the expected one, or null when it can
+     */
+    private static String ungradeableReason(ResultFingerprint expected, QueryResponse result) {
+        if (result.getLimitHit() != null) {
+            // A truncated or stopped result says nothing about the full one
+            return "Your query hit the " + result.getLimitHit() + " limit, so its result could not be graded";
+        }
+        if (!expected.isComparable() && hasComparableResult(expected.getCategory())) {
+            return "This challenge cannot be graded right now: its expected result is unavailable";
+        }
+        return null;
+    }
+
+    /**
+     * Whether a category is graded on its result; other statements are graded on their type alone
+     */
+    private static boolean hasComparableResult(String category) {
+        return "DQL".equals(category) || "DML".equals(category);
+    }
+
+    private boolean matches(ResultFingerprint expected, QueryResponse result) {
+        ResultFingerprint actual = fingerprint(result, null);
+        if (!Objects.equals(expected.getCategory(), actual.getCategory())) {
+            return false;
+        }
+        switch (expected.getCategory()) {
+            case "DQL":
+                return expected.getRowCount() == actual.getRowCount()
+                        && expected.getColumnCount() == actual.getColumnCount()
+                        && expected.getRowHashSum() == actual.getRowHashSum()
+                        && expected.getRowHashXor() == actual.getRowHashXor();
+            case "DML":
+                return expected.getRowCount() == actual.getRowCount();
+            default:
+                // Statements without a result set are graded on their type
+                return true;
+        }
+    }
+
+    /**
+     * Fingerprints a result; the category comes from the statement, falling back to the given one
+     */
+    static ResultFingerprint fingerprint(QueryResponse response, String fallbackCategory) {
+        String category = QueryGovernor.categoryOf(response.getQueryType());
+        if (category == null) {
+            category = fallbackCategory;
+        }
+
+        int columnCount = response.getHeaders() != null ? response.getHeaders().size() : 0;
+        int rowCount = response.getRowCount() != null ? response.getRowCount() : 0;
+        long sum = 0;
+        long xor = 0;
+        if ("DQL".equals(category) && response.getRows() != null) {
+            for (List<String> row : response.getRows()) {
+                long hash = rowHash(row);
+                sum += hash;
+                xor ^= hash;
+            }
+        }
+        return new ResultFingerprint(category, true, rowCount, columnCount, sum, xor);
+    }
+
+    /**
+     * FNV-1a over the normalized column values, finished with a 64-bit mixer
+     */
+    private static long rowHash(List<String> row) {
+        long hash = 0xcbf29ce484222325L;
+        for (String value : row) {
+            for (byte b : normalize(value).getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            // Column separator so ("ab", "c") and ("a", "bc") differ
+            hash ^= 0x1f;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Renders numbers canonically so 90, 90.0 and 90.00 compare equal
+     */
+    private static String normalize(String value) {
+        if (value != null && NUMBER.matcher(value).matches()) {
+            return new BigDecimal(value).stripTrailingZeros().toPlainString();
+        }
+        return value;
+    }
+
+    private record ChallengeStep(long id, String expectedQuery, String successMessage, String challengeType) {
+    }
+
+    private record CachedFingerprint(List<String> content, ResultFingerprint fingerprint) {
+    }
+}
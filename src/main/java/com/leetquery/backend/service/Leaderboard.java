@@ -0,0 +1,233 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.LeaderboardEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Global and per-stage leaderboards ranked by challenges completed, kept in order-statistics trees
+ * so top-N and "my rank" cost O(log n) instead of a sort over user_progress.
+ *
+ * Learners are ranked on the progress ProgressService holds in memory. Every ProgressChangedEvent
+ * re-places that one learner from their current completions, so events may arrive in any order;
+ * the boards are rebuilt in one pass once stored progress is loaded and whenever the catalog
+ * changes, since challenges can move between stages.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class Leaderboard {
+
+    // Most challenges first, then whoever got there first
+    private static final Comparator<Rank> ORDER = Comparator.comparingInt(Rank::score).reversed()
+            .thenComparing(Rank::reachedAt)
+            .thenComparingLong(Rank::userId);
+
+    private final ProgressService progressService;
+    private final CatalogService catalogService;
+
+    @Value("${app.leaderboard.default-limit:10}")
+    private int defaultLimit;
+
+    @Value("${app.leaderboard.max-limit:100}")
+    private int maxLimit;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock
+    private final Board global = new Board();
+    private final Map<String, Board> stages = new HashMap<>();
+    private final Map<Long, Set<String>> stagesOfUser = new HashMap<>();
+
+    @EventListener
+    public void onProgressLoaded(ProgressLoadedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onCatalogRefreshed(CatalogRefreshedEvent event) {
+        rebuild();
+    }
+
+    @EventListener
+    public void onProgressChanged(ProgressChangedEvent event) {
+        CatalogSnapshot catalog = catalogService.snapshot();
+        lock.writeLock().lock();
+        try {
+            place(event.userId(), catalog);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void rebuild() {
+        long started = System.nanoTime();
+        CatalogSnapshot catalog = catalogService.snapshot();
+        lock.writeLock().lock();
+        try {
+            global.clear();
+            stages.clear();
+            stagesOfUser.clear();
+            for (long userId : progressService.getUserIds()) {
+                place(userId, catalog);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Leaderboards rebuilt: {} ranked user(s), {} stage board(s) in {} ms",
+                global.size(), stages.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * The leaders of the global board, or of one stage when levelId and stageNumber are both given
+     * @param limit most entries to return; null for the default, capped at the maximum
+     * @throws ValidationException when only one of levelId and stageNumber is given
+     */
+    public List<LeaderboardEntry> top(Integer levelId, Integer stageNumber, Integer limit) {
+        String stage = stageKey(levelId, stageNumber);
+        int max = Math.min(limit == null ? defaultLimit : limit, maxLimit);
+        lock.readLock().lock();
+        try {
+            Board board = stage == null ? global : stages.get(stage);
+            if (board == null || max <= 0) {
+                return List.of();
+            }
+            List<LeaderboardEntry> entries = new ArrayList<>();
+            int rank = 1;
+            for (Rank entry : board.tree.range(0, max)) {
+                entries.add(entry.toEntry(rank++));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The user's place on the global or stage board, or null while they have completed nothing there
+     * @throws ValidationException when only one of levelId and stageNumber is given
+     */
+    public LeaderboardEntry rankOf(long userId, Integer levelId, Integer stageNumber) {
+        String stage = stageKey(levelId, stageNumber);
+        lock.readLock().lock();
+        try {
+            Board board = stage == null ? global : stages.get(stage);
+            Rank entry = board == null ? null : board.byUser.get(userId);
+            return entry == null ? null : entry.toEntry(board.tree.rank(entry) + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the user off every board and puts them back according to their current completions
+     */
+    private void place(long userId, CatalogSnapshot catalog) {
+        global.remove(userId);
+        Set<String> previous = stagesOfUser.remove(userId);
+        if (previous != null) {
+            for (String stage : previous) {
+                Board board = stages.get(stage);
+                board.remove(userId);
+                if (board.size() == 0) {
+                    stages.remove(stage);
+                }
+            }
+        }
+
+        ProgressService.UserCompletions progress = progressService.getCompletions(userId);
+        if (progress == null || progress.completed().isEmpty()) {
+            return;
+        }
+        Tally total = new Tally();
+        Map<String, Tally> byStage = new HashMap<>();
+        progress.completed().forEach((challengeId, completedAt) -> {
+            total.add(completedAt);
+            Challenge challenge = catalog.getChallenge(challengeId);
+            Integer levelId = catalog.getLevelOf(challengeId);
+            // Deleted challenges still count towards the global board
+            if (challenge != null && levelId != null && challenge.getStageNumber() != null) {
+                byStage.computeIfAbsent(stageKey(levelId, challenge.getStageNumber()), key -> new Tally())
+                        .add(completedAt);
+            }
+        });
+
+        global.add(new Rank(userId, progress.username(), total.count, total.last));
+        byStage.forEach((stage, tally) ->
+                stages.computeIfAbsent(stage, key -> new Board())
+                        .add(new Rank(userId, progress.username(), tally.count, tally.last)));
+        stagesOfUser.put(userId, byStage.keySet());
+    }
+
+    private static String stageKey(Integer levelId, Integer stageNumber) {
+        if ((levelId == null) != (stageNumber == null)) {
+            throw new ValidationException("levelId and stageNumber go together");
+        }
+        return levelId == null ? null : levelId + ":" + stageNumber;
+    }
+
+    private static final class Board {
+        final RankTree<Rank> tree = new RankTree<>(ORDER);
+        final Map<Long, Rank> byUser = new HashMap<>();
+
+        void add(Rank entry) {
+            tree.add(entry);
+            byUser.put(entry.userId(), entry);
+        }
+
+        void remove(long userId) {
+            Rank entry = byUser.remove(userId);
+            if (entry != null) {
+                tree.remove(entry);
+            }
+        }
+
+        void clear() {
+            tree.clear();
+            byUser.clear();
+        }
+
+        int size() {
+            return byUser.size();
+        }
+    }
+
+    private static final class Tally {
+        int count;
+        LocalDateTime last;
+
+        void add(LocalDateTime completedAt) {
+            count++;
+            if (last == null || completedAt.isAfter(last)) {
+                last = completedAt;
+            }
+        }
+    }
+
+    private record Rank(long userId, String username, int score, LocalDateTime reachedAt) {
+
+        LeaderboardEntry toEntry(int rank) {
+            return LeaderboardEntry.builder()
+                    .rank(rank)
+                    .userId(userId)
+                    .username(username)
+                    .challengesCompleted(score)
+                    .reachedAt(reachedAt)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.leetquery.backend.service;
+
+/**
+ * Published by ProgressService when a user completes a challenge or resets their progress
+ */
+public record ProgressChangedEvent(long userId) {
+}
@@ -0,0 +1,7 @@
+package com.leetquery.backend.service;
+
+/**
+ * Published by ProgressService once stored progress has been loaded into memory
+ */
+public record ProgressLoadedEvent() {
+}
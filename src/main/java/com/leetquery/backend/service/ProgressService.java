@@ -0,0 +1,390 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.model.ProgressResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind store for learner progress (user_progress and user_challenge_completions).
+ *
+ * All progress is loaded into memory once the application is ready. A graded submission only
+ * updates the learner's in-memory entry with atomic operations and marks it dirty; a background
+ * thread writes dirty entries every flush-interval-ms as batched statements in one transaction,
+ * so tracking progress adds no database write to the query path. When a batch fails, its users
+ * are written one transaction each, so one bad entry cannot hold back the rest; an entry that
+ * still fails stays dirty for the next flush, unless its user has been deleted, in which case
+ * it is dropped.
+ *
+ * A ProgressLoadedEvent follows the initial load and a ProgressChangedEvent follows every new
+ * completion and reset.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProgressService {
+
+    private static final String INSERT_PROGRESS_SQL =
+            "INSERT INTO user_progress (user_id, total_challenges_completed, total_execution_time_ms, last_activity_at) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_PROGRESS_SQL =
+            "UPDATE user_progress SET total_challenges_completed = ?, total_execution_time_ms = ?, " +
+            "last_activity_at = ?, updated_at = ? WHERE user_id = ?";
+    private static final String INSERT_COMPLETION_SQL =
+            "INSERT INTO user_challenge_completions (user_id, challenge_id, completed_at) VALUES (?, ?, ?)";
+    private static final String DELETE_COMPLETIONS_SQL =
+            "DELETE FROM user_challenge_completions WHERE user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.progress.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${app.progress.batch-size:500}")
+    private int batchSize;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private TransactionTemplate transactionTemplate;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter flushed;
+    private Counter flushFailures;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flushed = meterRegistry.counter("progress.flushed");
+        flushFailures = meterRegistry.counter("progress.flush.failures");
+        meterRegistry.gauge("progress.dirty", dirty, Set::size);
+    }
+
+    /**
+     * Loads stored progress in one pass per table, then starts the flusher. Runs after
+     * DatabaseInitializer, which creates the tables where migrations are off.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        try {
+            jdbcTemplate.query("SELECT p.user_id, u.username, p.total_execution_time_ms, p.last_activity_at " +
+                    "FROM user_progress p LEFT JOIN users u ON u.id = p.user_id", rs -> {
+                Entry entry = entry(rs.getLong("user_id"));
+                if (entry.username == null) {
+                    entry.username = rs.getString("username");
+                }
+                if (entry.resets.get() == 0) {
+                    entry.executionTimeMs.addAndGet(rs.getLong("total_execution_time_ms"));
+                    Timestamp lastActivity = rs.getTimestamp("last_activity_at");
+                    if (entry.lastActivityAt == null && lastActivity != null) {
+                        entry.lastActivityAt = lastActivity.toLocalDateTime();
+                    }
+                }
+            });
+            jdbcTemplate.query("SELECT user_id, challenge_id, completed_at FROM user_challenge_completions", rs -> {
+                Entry entry = entry(rs.getLong("user_id"));
+                long challengeId = rs.getLong("challenge_id");
+                LocalDateTime completedAt = rs.getTimestamp("completed_at").toLocalDateTime();
+                if (entry.resets.get() == 0 && entry.completed.putIfAbsent(challengeId, completedAt) != null) {
+                    // Solved again before loading finished; the stored row already covers it
+                    entry.unsaved.removeIf(completion -> completion.challengeId() == challengeId);
+                }
+            });
+            log.info("Loaded progress of {} user(s) in {} ms", entries.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Could not load stored progress: {}", e.getMessage());
+        }
+        eventPublisher.publishEvent(new ProgressLoadedEvent());
+
+        running = true;
+        flusher = new Thread(this::runFlusher, "progress-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(flushIntervalMs + 5000);
+        }
+        flush();
+    }
+
+    /**
+     * Records a graded submission; a correct one completes the challenge unless it already was
+     */
+    public void recordSubmission(long userId, String username, long challengeId, boolean correct,
+                                 long executionTimeMs) {
+        Entry entry = entry(userId);
+        if (username != null) {
+            entry.username = username;
+        }
+        entry.executionTimeMs.addAndGet(executionTimeMs);
+        LocalDateTime now = LocalDateTime.now();
+        entry.lastActivityAt = now;
+        boolean completed = correct && entry.completed.putIfAbsent(challengeId, now) == null;
+        if (completed) {
+            entry.unsaved.add(new Completion(challengeId, now));
+        }
+        dirty.add(userId);
+        if (completed) {
+            eventPublisher.publishEvent(new ProgressChangedEvent(userId));
+        }
+    }
+
+    /**
+     * Forgets everything the user has completed
+     */
+    public void reset(long userId) {
+        Entry entry = entry(userId);
+        entry.resets.incrementAndGet();
+        entry.resetPending.set(true);
+        entry.unsaved.clear();
+        entry.completed.clear();
+        entry.executionTimeMs.set(0);
+        entry.lastActivityAt = LocalDateTime.now();
+        dirty.add(userId);
+        eventPublisher.publishEvent(new ProgressChangedEvent(userId));
+    }
+
+    public ProgressResponse getProgress(long userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return ProgressResponse.builder()
+                    .userId(userId)
+                    .completedChallengeIds(List.of())
+                    .build();
+        }
+        List<Long> completed = new ArrayList<>(entry.completed.keySet());
+        completed.sort(null);
+        return ProgressResponse.builder()
+                .userId(userId)
+                .challengesCompleted(completed.size())
+                .completedChallengeIds(completed)
+                .totalExecutionTimeMs(entry.executionTimeMs.get())
+                .lastActivityAt(entry.lastActivityAt)
+                .build();
+    }
+
+    /**
+     * Users with any progress in memory
+     */
+    public Set<Long> getUserIds() {
+        return entries.keySet();
+    }
+
+    /**
+     * The user's name and solved challenges with when each was solved; null for an unknown user
+     */
+    public UserCompletions getCompletions(long userId) {
+        Entry entry = entries.get(userId);
+        return entry != null ? new UserCompletions(entry.username, Map.copyOf(entry.completed)) : null;
+    }
+
+    /**
+     * Writes every dirty entry; called by the flusher, on shutdown and by tests
+     */
+    public synchronized void flush() {
+        List<Pending> batch = new ArrayList<>(Math.min(dirty.size(), batchSize));
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+            Long userId = it.next();
+            // Removed before reading, so a submission racing with the snapshot marks the entry dirty again
+            it.remove();
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                // Dropped with a deleted user
+                continue;
+            }
+            batch.add(snapshot(userId, entry));
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private Pending snapshot(long userId, Entry entry) {
+        int generation = entry.resets.get();
+        boolean reset = entry.resetPending.getAndSet(false);
+        List<Completion> completions = new ArrayList<>();
+        Completion completion;
+        while ((completion = entry.unsaved.poll()) != null) {
+            completions.add(completion);
+        }
+        return new Pending(userId, entry, generation, reset, completions, entry.completed.size(),
+                entry.executionTimeMs.get(), entry.lastActivityAt);
+    }
+
+    private void write(List<Pending> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeAll(batch));
+            flushed.increment(batch.size());
+            return;
+        } catch (Exception e) {
+            flushFailures.increment();
+            if (batch.size() > 1) {
+                log.warn("Failed to write progress of {} user(s), retrying one by one: {}", batch.size(), e.getMessage());
+            } else {
+                failed(batch.get(0), e);
+                return;
+            }
+        }
+        for (Pending pending : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeAll(List.of(pending)));
+                flushed.increment();
+            } catch (Exception e) {
+                failed(pending, e);
+            }
+        }
+    }
+
+    private void writeAll(List<Pending> batch) {
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> completions = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Pending pending : batch) {
+            if (pending.reset()) {
+                deletes.add(new Object[]{pending.userId()});
+            }
+            for (Completion completion : pending.completions()) {
+                completions.add(new Object[]{pending.userId(), completion.challengeId(),
+                        Timestamp.valueOf(completion.completedAt())});
+            }
+            updates.add(new Object[]{pending.challengesCompleted(), pending.executionTimeMs(),
+                    timestamp(pending.lastActivityAt()), now, pending.userId()});
+        }
+
+        // Deletes first: completions queued after a reset belong to the new run
+        batchUpdate(DELETE_COMPLETIONS_SQL, deletes);
+        batchUpdate(INSERT_COMPLETION_SQL, completions);
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_PROGRESS_SQL, updates);
+        // Users without a user_progress row yet; drivers that cannot tell report SUCCESS_NO_INFO, not 0
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (updated[i] == 0) {
+                Pending pending = batch.get(i);
+                inserts.add(new Object[]{pending.userId(), pending.challengesCompleted(), pending.executionTimeMs(),
+                        timestamp(pending.lastActivityAt())});
+            }
+        }
+        batchUpdate(INSERT_PROGRESS_SQL, inserts);
+    }
+
+    private void batchUpdate(String sql, List<Object[]> args) {
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, args);
+        }
+    }
+
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+
+    /**
+     * Keeps a user's writes for the next flush, or drops them when the user has been deleted
+     */
+    private void failed(Pending pending, Exception e) {
+        boolean userExists;
+        try {
+            userExists = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class,
+                    pending.userId()) > 0;
+        } catch (Exception lookupFailure) {
+            // Most likely the database is unavailable; assume the user is still there
+            userExists = true;
+        }
+        if (userExists) {
+            log.warn("Failed to write progress of user {}, will retry: {}", pending.userId(), e.getMessage());
+            restore(pending);
+        } else {
+            log.warn("Dropping progress of deleted user {}: {}", pending.userId(), e.getMessage());
+            entries.remove(pending.userId(), pending.entry());
+        }
+    }
+
+    private void restore(Pending pending) {
+        Entry entry = pending.entry();
+        // A reset since the snapshot has superseded these writes
+        if (entry.resets.get() == pending.generation()) {
+            if (pending.reset()) {
+                entry.resetPending.set(true);
+            }
+            entry.unsaved.addAll(pending.completions());
+        }
+        dirty.add(pending.userId());
+    }
+
+    private Entry entry(long userId) {
+        Entry entry = entries.get(userId);
+        return entry != null ? entry : entries.computeIfAbsent(userId, id -> new Entry());
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            flush();
+        }
+    }
+
+    private static final class Entry {
+        // Challenge id to when it was solved
+        final Map<Long, LocalDateTime> completed = new ConcurrentHashMap<>();
+        final AtomicLong executionTimeMs = new AtomicLong();
+        // Completions not yet written to user_challenge_completions
+        final Queue<Completion> unsaved = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean resetPending = new AtomicBoolean();
+        final AtomicInteger resets = new AtomicInteger();
+        volatile LocalDateTime lastActivityAt;
+        volatile String username;
+    }
+
+    public record UserCompletions(String username, Map<Long, LocalDateTime> completed) {
+    }
+
+    private record Completion(long challengeId, LocalDateTime completedAt) {
+    }
+
+    private record Pending(long userId, Entry entry, int generation, boolean reset, List<Completion> completions,
+                           int challengesCompleted, long executionTimeMs, LocalDateTime lastActivityAt) {
+    }
+}
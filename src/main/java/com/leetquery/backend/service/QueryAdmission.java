@@ -0,0 +1,361 @@
+package com.leetquery.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.leetquery.backend.exception.QueryLimitExceededException;
+import com.leetquery.backend.util.SqlStatement;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of query execution.
+ *
+ * SELECT, UPDATE and DELETE statements are EXPLAINed first to estimate the rows they scan
+ * and their join fan-out. Estimates over the low-priority thresholds wait for one of a few
+ * low-priority slots; estimates over the reject thresholds are refused without running.
+ * Verdicts are cached per normalized statement text (literals kept, since they change the plan)
+ * and dataset scope, so a verdict is reused only for the same query over the same data.
+ * Only the given statement is judged, so every statement that runs must be admitted on its
+ * own: scripts admit each step, and the single-query paths refuse input with more than one.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryAdmission {
+
+    // A row source in an H2 plan: FROM/JOIN/UPDATE target followed by its access comment
+    private static final Pattern H2_SOURCE = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE)\\s+(?:\"([^\"]+)\"\\.\"([^\"]+)\"|SYSTEM_RANGE\\((-?\\d+),\\s*(-?\\d+)\\))"
+                    + "(?:\\s+\"[^\"]*\")?\\s*/\\*",
+            Pattern.CASE_INSENSITIVE);
+
+    // Fraction of a table a non-unique index lookup is assumed to read
+    private static final long INDEX_SELECTIVITY = 10;
+
+    private static final Permit NO_PERMIT = () -> { };
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.query.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.query.admission.low-priority.rows-scanned:1000000}")
+    private long lowPriorityRows;
+
+    @Value("${app.query.admission.low-priority.fan-out:10000000}")
+    private long lowPriorityFanOut;
+
+    @Value("${app.query.admission.reject.rows-scanned:1000000000}")
+    private long rejectRows;
+
+    @Value("${app.query.admission.reject.fan-out:100000000000}")
+    private long rejectFanOut;
+
+    @Value("${app.query.admission.low-priority.slots:2}")
+    private int lowPrioritySlots;
+
+    @Value("${app.query.admission.low-priority.wait-ms:5000}")
+    private long lowPriorityWaitMs;
+
+    @Value("${app.query.admission.verdict-cache.max-entries:10000}")
+    private long verdictCacheSize;
+
+    @Value("${app.query.admission.verdict-cache.ttl-seconds:600}")
+    private long verdictTtlSeconds;
+
+    private Semaphore lowPriority;
+    private Cache<String, Verdict> verdicts;
+    private Counter lowPriorityCount;
+    private Counter rejected;
+
+    @PostConstruct
+    public void init() {
+        lowPriority = new Semaphore(lowPrioritySlots, true);
+        verdicts = Caffeine.newBuilder()
+                .maximumSize(verdictCacheSize)
+                .expireAfterWrite(verdictTtlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verdicts, "queryAdmissionVerdicts");
+        lowPriorityCount = meterRegistry.counter("query.admission.low.priority");
+        rejected = meterRegistry.counter("query.admission.rejected");
+    }
+
+    /**
+     * Decides whether the statement may run now, after a low-priority wait, or not at all.
+     * The returned permit must be closed once the statement has finished.
+     * @param dataset the database the statement runs against, whose writes invalidate cached verdicts
+     * @throws QueryLimitExceededException when the statement is rejected or no low-priority slot frees up
+     */
+    public Permit admit(SqlStatement statement, JdbcTemplate template, DatasetVersion dataset) {
+        return admit(statement, dataset,
+                () -> template.execute((Connection connection) -> explain(connection, statement.getSql())));
+    }
+
+    /**
+     * Same as above, for a statement that will run on a connection the caller already holds,
+     * such as one step of a script inside its transaction; the plan is taken on that connection
+     */
+    public Permit admit(SqlStatement statement, Connection connection, DatasetVersion dataset) {
+        return admit(statement, dataset, () -> explain(connection, statement.getSql()));
+    }
+
+    private Permit admit(SqlStatement statement, DatasetVersion dataset, Planner planner) {
+        if (!enabled || !isExplainable(statement)) {
+            return NO_PERMIT;
+        }
+
+        String key = dataset.scopeFor(statement.getTables()) + '|' + statement.getNormalized();
+        Verdict verdict = verdicts.get(key, k -> judge(statement, planner));
+        switch (verdict.decision) {
+            case REJECT:
+                rejected.increment();
+                throw new QueryLimitExceededException(QueryGovernor.REJECTED,
+                        "Query rejected: the plan scans about " + verdict.rowsScanned
+                                + " row(s) with a join fan-out of about " + verdict.fanOut);
+            case LOW_PRIORITY:
+                lowPriorityCount.increment();
+                return waitForSlot();
+            default:
+                return NO_PERMIT;
+        }
+    }
+
+    private Permit waitForSlot() {
+        try {
+            if (!lowPriority.tryAcquire(lowPriorityWaitMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new QueryLimitExceededException(QueryGovernor.REJECTED,
+                        "Too many expensive queries are running; try again shortly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryLimitExceededException(QueryGovernor.REJECTED, "Interrupted while waiting to run", e);
+        }
+        return lowPriority::release;
+    }
+
+    private Verdict judge(SqlStatement statement, Planner planner) {
+        Estimate estimate;
+        try {
+            estimate = planner.plan();
+        } catch (Exception e) {
+            // Statements the database cannot plan fail properly when they run
+            log.debug("EXPLAIN failed, admitting: {}", e.getMessage());
+            return new Verdict(Decision.ADMIT, 0, 0);
+        }
+
+        Decision decision = Decision.ADMIT;
+        if (estimate.rowsScanned > rejectRows || estimate.fanOut > rejectFanOut) {
+            decision = Decision.REJECT;
+        } else if (estimate.rowsScanned > lowPriorityRows || estimate.fanOut > lowPriorityFanOut) {
+            decision = Decision.LOW_PRIORITY;
+        }
+        if (decision != Decision.ADMIT) {
+            log.info("Admission {} for plan scanning ~{} row(s), fan-out ~{}: {}",
+                    decision, estimate.rowsScanned, estimate.fanOut, statement.getFingerprint());
+        }
+        return new Verdict(decision, estimate.rowsScanned, estimate.fanOut);
+    }
+
+    private Estimate explain(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(2);
+            try (ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+                int rowsColumn = findColumn(rs.getMetaData(), "rows");
+                if (rowsColumn > 0) {
+                    return fromTabularPlan(rs, rowsColumn);
+                }
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return fromH2Plan(connection, plan.toString());
+            }
+        }
+    }
+
+    /**
+     * MySQL-style plan: one row per table access with an estimated row count.
+     * Accesses of the outermost select form the join, so their counts multiply.
+     */
+    private Estimate fromTabularPlan(ResultSet rs, int rowsColumn) throws SQLException {
+        int idColumn = findColumn(rs.getMetaData(), "id");
+        long scanned = 0;
+        long fanOut = 1;
+        while (rs.next()) {
+            long rows = Math.max(1, rs.getLong(rowsColumn));
+            scanned = saturatedAdd(scanned, rows);
+            if (idColumn <= 0 || rs.getInt(idColumn) == 1) {
+                fanOut = saturatedMultiply(fanOut, rows);
+            }
+        }
+        return new Estimate(scanned, fanOut);
+    }
+
+    /**
+     * H2 plan text: each row source carries a comment naming its access path. Table scans
+     * read the whole table, primary key lookups one row and other index lookups a fraction.
+     * Sources at the top level are joined, so their counts multiply.
+     */
+    private Estimate fromH2Plan(Connection connection, String plan) throws SQLException {
+        long scanned = 0;
+        long fanOut = 1;
+        Matcher matcher = H2_SOURCE.matcher(plan);
+        int from = 0;
+        while (from < plan.length() && matcher.find(from)) {
+            int commentEnd = commentEnd(plan, matcher.end());
+            String access = plan.substring(matcher.end(), Math.max(matcher.end(), commentEnd - 2)).trim();
+
+            long rows;
+            if (matcher.group(3) != null) {
+                rows = Math.max(1, Long.parseLong(matcher.group(4)) - Long.parseLong(matcher.group(3)) + 1);
+            } else if (access.endsWith(".tableScan")) {
+                rows = tableRows(connection, matcher.group(1), matcher.group(2));
+            } else if (access.contains("PRIMARY_KEY") && access.contains(" = ")) {
+                rows = 1;
+            } else {
+                rows = Math.max(1, tableRows(connection, matcher.group(1), matcher.group(2)) / INDEX_SELECTIVITY);
+            }
+
+            scanned = saturatedAdd(scanned, rows);
+            if (depthAt(plan, matcher.start()) == 0) {
+                fanOut = saturatedMultiply(fanOut, rows);
+            }
+            // Access comments can quote a subquery; skip it so it is not counted twice
+            from = commentEnd;
+        }
+        return new Estimate(scanned, fanOut);
+    }
+
+    private long tableRows(Connection connection, String schema, String table) throws SQLException {
+        if (schema == null) {
+            return 1;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?")) {
+            statement.setString(1, schema);
+            statement.setString(2, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? Math.max(1, rs.getLong(1)) : 1;
+            }
+        }
+    }
+
+    /**
+     * Offset just past the comment opened before start, honouring nested comments
+     */
+    private static int commentEnd(String plan, int start) {
+        int nesting = 1;
+        int i = start;
+        while (i < plan.length() - 1 && nesting > 0) {
+            if (plan.startsWith("/*", i)) {
+                nesting++;
+                i += 2;
+            } else if (plan.startsWith("*/", i)) {
+                nesting--;
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return nesting == 0 ? i : plan.length();
+    }
+
+    /**
+     * Parenthesis depth at an offset, ignoring quoted text
+     */
+    private static int depthAt(String plan, int offset) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < offset; i++) {
+            char c = plan.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            }
+        }
+        return depth;
+    }
+
+    private static int findColumn(ResultSetMetaData metaData, String name) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (name.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isExplainable(SqlStatement statement) {
+        switch (statement.getKind()) {
+            case "SELECT":
+            case "UPDATE":
+            case "DELETE":
+                // Constant selects have nothing to scan
+                return !statement.getTables().isEmpty() || statement.getFunctions().contains("system_range");
+            default:
+                return false;
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long product = a * b;
+        return high != 0 || product < 0 ? Long.MAX_VALUE : product;
+    }
+
+    /**
+     * Held while an admitted statement runs; closing it frees a low-priority slot if one was taken
+     */
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    private interface Planner {
+        Estimate plan() throws Exception;
+    }
+
+    private enum Decision {
+        ADMIT, LOW_PRIORITY, REJECT
+    }
+
+    private record Verdict(Decision decision, long rowsScanned, long fanOut) {
+    }
+
+    private record Estimate(long rowsScanned, long fanOut) {
+    }
+}
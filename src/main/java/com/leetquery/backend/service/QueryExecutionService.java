@@ -1,16 +1,36 @@
 package com.leetquery.backend.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leetquery.backend.exception.QueryLimitExceededException;
+import com.leetquery.backend.model.QueryBudget;
+import com.leetquery.backend.model.QueryContext;
+import com.leetquery.backend.model.QueryExecutionRecord;
 import com.leetquery.backend.model.QueryResponse;
+import com.leetquery.backend.model.ScriptResponse;
+import com.leetquery.backend.util.SqlLexer;
+import com.leetquery.backend.util.SqlStatement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -18,38 +38,81 @@ import java.util.List;
 public class QueryExecutionService {
 
     private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final SandboxManager sandboxManager;
+    private final QueryGovernor queryGovernor;
+    private final QueryResultCache resultCache;
+    private final QueryHistoryWriter queryHistoryWriter;
+    private final QueryAdmission queryAdmission;
+    private final CatalogService catalogService;
+
+    private final DatasetVersion sharedDataset = new DatasetVersion("shared", false);
+
+    @Value("${app.query.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    @Value("${app.query.stream.max-rows:100000}")
+    private int streamMaxRows;
+
+    @Value("${app.query.script.max-statements:100}")
+    private int scriptMaxStatements;
 
     /**
-     * Executes a SQL query and returns formatted results
+     * Executes a SQL query against the shared database and returns formatted results
      */
     public QueryResponse executeQuery(String query) throws SQLException {
+        return executeQuery(query, QueryContext.shared());
+    }
+
+    /**
+     * Executes a SQL query and returns formatted results.
+     * Queries with an owner run inside that owner's sandbox, and every query runs
+     * under the budget for the caller's tier and the challenge type.
+     */
+    public QueryResponse executeQuery(String query, QueryContext context) throws SQLException {
         String trimmedQuery = query.trim();
-        String queryType = detectQueryType(trimmedQuery);
+        long startedAt = System.nanoTime();
+        QueryResponse response = null;
+        String error = null;
+
+        try {
+            response = executeWithinBudget(trimmedQuery, context);
+            return response;
+        } catch (Exception e) {
+            error = e.getMessage();
+            throw e;
+        } finally {
+            recordHistory(context, trimmedQuery, response, error, startedAt);
+        }
+    }
+
+    private QueryResponse executeWithinBudget(String trimmedQuery, QueryContext context) throws SQLException {
+        List<SqlStatement> statements = SqlLexer.lex(trimmedQuery);
+        if (statements.size() > 1) {
+            return singleStatementOnly(statements);
+        }
+        SqlStatement statement = statements.isEmpty() ? SqlLexer.analyze(trimmedQuery) : statements.get(0);
+        String queryType = statement.getKind();
+        QueryBudget budget = queryGovernor.budgetFor(context, queryType);
         
         log.info("Executing {} query: {}", queryType, trimmedQuery);
 
         try {
-            switch (queryType) {
-                case "SELECT":
-                case "SHOW":
-                case "DESCRIBE":
-                case "EXPLAIN":
-                    return executeSelectQuery(trimmedQuery, queryType);
-                    
-                case "INSERT":
-                case "UPDATE":
-                case "DELETE":
-                    return executeDMLQuery(trimmedQuery, queryType);
-                    
-                case "CREATE":
-                case "ALTER":
-                case "DROP":
-                case "TRUNCATE":
-                    return executeDDLQuery(trimmedQuery, queryType);
-                    
-                default:
-                    return executeGenericQuery(trimmedQuery, queryType);
+            if (usesSandbox(context)) {
+                try (SandboxManager.Lease lease = sandboxManager.acquire(context.getOwner())) {
+                    return executeCached(trimmedQuery, statement, lease.getJdbcTemplate(),
+                            lease.getSandbox().getDatasetVersion(), budget, context);
+                }
             }
+            return executeCached(trimmedQuery, statement, jdbcTemplate, sharedDataset, budget, context);
+        } catch (QueryLimitExceededException e) {
+            log.warn("Query stopped ({}): {}", e.getLimit(), e.getMessage());
+            return QueryResponse.builder()
+                    .success(false)
+                    .queryType(queryType)
+                    .message(e.getMessage())
+                    .limitHit(e.getLimit())
+                    .build();
         } catch (Exception e) {
             log.error("Query execution failed: {}", e.getMessage());
             throw e;
@@ -57,46 +120,498 @@ public class QueryExecutionService {
     }
 
     /**
-     * Executes SELECT queries and returns result set
+     * Classification, admission, caching and budgets all look at one statement, so a query
+     * that holds several is refused instead of running the ones after the first unchecked
      */
-    private QueryResponse executeSelectQuery(String query, String queryType) {
-        List<String> headers = new ArrayList<>();
-        List<List<String>> rows = new ArrayList<>();
+    private static QueryResponse singleStatementOnly(List<SqlStatement> statements) {
+        return QueryResponse.builder()
+                .success(false)
+                .queryType(statements.get(0).getKind())
+                .message("Only one statement can run per query, but this one has " + statements.size()
+                        + ". Use /executeScript to run several.")
+                .build();
+    }
 
-        jdbcTemplate.query(query, (ResultSet rs) -> {
-            // Extract headers from metadata
-            if (headers.isEmpty()) {
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
-                for (int i = 1; i <= columnCount; i++) {
-                    headers.add(metaData.getColumnName(i));
+    /**
+     * Queues the execution for the query_executions table; only signed-in users have history
+     */
+    private void recordHistory(QueryContext context, String query, QueryResponse response, String error, long startedAt) {
+        if (context.getUserId() == null) {
+            return;
+        }
+
+        String status;
+        if (response == null) {
+            status = "ERROR";
+        } else if (response.isSuccess()) {
+            status = "SUCCESS";
+        } else {
+            // A stopped statement is stored under the limit that stopped it, e.g. REJECTED
+            status = response.getLimitHit() != null ? response.getLimitHit() : "ERROR";
+            error = error != null ? error : response.getMessage();
+        }
+
+        recordHistory(context, query, status, error,
+                response != null && response.isSuccess() ? response.getRowCount() : null, startedAt);
+    }
+
+    private void recordHistory(QueryContext context, String query, String status, String error,
+                               Integer resultRows, long startedAt) {
+        if (context.getUserId() == null) {
+            return;
+        }
+        queryHistoryWriter.record(QueryExecutionRecord.builder()
+                .userId(context.getUserId())
+                .problemId(knownProblem(context.getProblemId()))
+                .challengeId(context.getChallengeId())
+                .query(query)
+                .status(status)
+                .errorMessage(error)
+                .resultRows(resultRows)
+                .executionTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * The id if the catalog has such a problem; problem_id is a foreign key, and one bad id
+     * would fail the whole history batch it is written in
+     */
+    private Long knownProblem(Long problemId) {
+        if (problemId == null || problemId < 1 || problemId > Integer.MAX_VALUE) {
+            return null;
+        }
+        return catalogService.snapshot().getProblem(problemId.intValue()) != null ? problemId : null;
+    }
+
+    /**
+     * Serves cacheable SELECTs from the result cache and records writes so cached results stay current
+     */
+    private QueryResponse executeCached(String query, SqlStatement statement, JdbcTemplate template,
+                                        DatasetVersion dataset, QueryBudget budget, QueryContext context) {
+        String queryType = statement.getKind();
+        String owner = context.getOwner();
+        boolean columnar = context.isColumnar();
+        if (!"SELECT".equals(queryType) || !statement.isPlainRead()) {
+            try {
+                return admitAndExecute(query, statement, template, dataset, budget, owner, columnar);
+            } finally {
+                // Recorded even on failure: a cancelled or failed statement may still have changed data
+                resultCache.recordWrite(statement, dataset);
+            }
+        }
+
+        QueryResultCache.Key key = context.isBypassCache() ? null : resultCache.keyFor(statement, dataset, columnar);
+        if (key == null) {
+            return admitAndExecute(query, statement, template, dataset, budget, owner, columnar);
+        }
+
+        QueryResponse cached = resultCache.get(key);
+        if (cached != null && fitsBudget(cached, budget)) {
+            return cached;
+        }
+
+        QueryResponse response = admitAndExecute(query, statement, template, dataset, budget, owner, columnar);
+        if (response.isSuccess() && response.getLimitHit() == null) {
+            resultCache.put(key, response);
+        }
+        return response;
+    }
+
+    /**
+     * Whether a cached result is within the caller's row and byte budget
+     */
+    private boolean fitsBudget(QueryResponse response, QueryBudget budget) {
+        if (budget.getMaxRows() != null && response.getRowCount() > budget.getMaxRows()) {
+            return false;
+        }
+        if (budget.getMaxResultBytes() != null) {
+            long bytes = 0;
+            if (response.getColumnar() != null) {
+                bytes = response.getColumnar().getByteSize();
+            } else {
+                for (List<String> row : response.getRows()) {
+                    for (String value : row) {
+                        bytes += value.length();
+                    }
                 }
             }
+            return bytes <= budget.getMaxResultBytes();
+        }
+        return true;
+    }
+
+    /**
+     * Runs the statement once admission control lets it; cache hits never get here
+     */
+    private QueryResponse admitAndExecute(String query, SqlStatement statement, JdbcTemplate template,
+                                          DatasetVersion dataset, QueryBudget budget, String owner,
+                                          boolean columnar) {
+        try (QueryAdmission.Permit permit = queryAdmission.admit(statement, template, dataset)) {
+            return execute(query, statement.getKind(), template, budget, owner, columnar);
+        }
+    }
+
+    /**
+     * Dispatches the query by type against the given database
+     */
+    private QueryResponse execute(String query, String queryType, JdbcTemplate template,
+                                  QueryBudget budget, String owner, boolean columnar) {
+        return template.execute((Statement statement) -> queryGovernor.supervise(statement, budget, owner,
+                () -> dispatch(statement, query, queryType, budget, columnar)));
+    }
+
+    private QueryResponse dispatch(Statement statement, String query, String queryType,
+                                   QueryBudget budget, boolean columnar) throws SQLException {
+        switch (queryType) {
+            case "SELECT":
+            case "SHOW":
+            case "DESCRIBE":
+            case "EXPLAIN":
+                return executeSelectQuery(statement, query, queryType, budget, columnar);
 
-            // Extract row data
-            List<String> row = new ArrayList<>();
-            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-                Object value = rs.getObject(i);
-                row.add(value != null ? value.toString() : "NULL");
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "MERGE":
+                return executeDMLQuery(statement, query, queryType);
+
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+            case "TRUNCATE":
+                return executeDDLQuery(statement, query, queryType);
+
+            default:
+                return executeGenericQuery(statement, query, queryType);
+        }
+    }
+
+    /**
+     * Runs a multi-statement script on one connection in one transaction.
+     * Every statement goes through admission control before it runs. Consecutive INSERT/UPDATE
+     * statements are sent as one JDBC batch. The first failing statement rolls the script back
+     * and ends it, except for what schema changes before it have already committed; each
+     * statement that ran gets a result section, in order.
+     */
+    public ScriptResponse executeScript(String script, QueryContext context) {
+        long startedAt = System.nanoTime();
+        List<SqlStatement> statements = SqlLexer.lex(script);
+        ScriptResponse response;
+
+        if (statements.isEmpty()) {
+            response = ScriptResponse.builder()
+                    .success(false)
+                    .results(List.of())
+                    .message("Script contains no statements")
+                    .build();
+        } else if (statements.size() > scriptMaxStatements) {
+            response = ScriptResponse.builder()
+                    .success(false)
+                    .statementCount(statements.size())
+                    .results(List.of())
+                    .message("Script has " + statements.size() + " statements; the limit is " + scriptMaxStatements)
+                    .build();
+        } else {
+            log.info("Executing script of {} statement(s)", statements.size());
+            if (usesSandbox(context)) {
+                try (SandboxManager.Lease lease = sandboxManager.acquire(context.getOwner())) {
+                    response = runScript(statements, lease.getJdbcTemplate(),
+                            lease.getSandbox().getDatasetVersion(), context);
+                }
+            } else {
+                response = runScript(statements, jdbcTemplate, sharedDataset, context);
+            }
+        }
+
+        String status = "SUCCESS";
+        if (!response.isSuccess()) {
+            List<QueryResponse> results = response.getResults();
+            String limitHit = results.isEmpty() ? null : results.get(results.size() - 1).getLimitHit();
+            status = limitHit != null ? limitHit : "ERROR";
+        }
+        recordHistory(context, script.trim(), status, response.isSuccess() ? null : response.getMessage(), null,
+                startedAt);
+        return response;
+    }
+
+    private ScriptResponse runScript(List<SqlStatement> statements, JdbcTemplate template,
+                                     DatasetVersion dataset, QueryContext context) {
+        List<QueryResponse> results = new ArrayList<>(statements.size());
+        String failure = template.execute((Connection connection) -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                String error = runStatements(connection, statements, dataset, context, results);
+                if (error == null) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+                return error;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                // Rolled back or not, a write may have touched cached tables
+                for (SqlStatement statement : statements) {
+                    resultCache.recordWrite(statement, dataset);
+                }
             }
-            rows.add(row);
         });
 
+        boolean success = failure == null;
+        return ScriptResponse.builder()
+                .success(success)
+                .statementCount(statements.size())
+                .results(results)
+                .message(success
+                        ? statements.size() + " statement(s) executed"
+                        : failureMessage(statements, results.size(), failure))
+                .build();
+    }
+
+    /**
+     * Says what the rollback undid; DDL commits implicitly, so anything up to the last schema
+     * change before the failing statement stays applied
+     */
+    private static String failureMessage(List<SqlStatement> statements, int failed, String failure) {
+        int committed = 0;
+        for (int i = 0; i < failed - 1; i++) {
+            if (isDdl(statements.get(i))) {
+                committed = i + 1;
+            }
+        }
+        if (committed == 0) {
+            return "Statement " + failed + " failed, script rolled back: " + failure;
+        }
+        String applied = committed == 1 ? "statement 1 stays" : "statements 1 to " + committed + " stay";
+        String undone;
+        if (committed + 1 == failed) {
+            undone = "nothing after it ran";
+        } else if (committed + 2 == failed) {
+            undone = "statement " + (committed + 1) + " was rolled back";
+        } else {
+            undone = "statements " + (committed + 1) + " to " + (failed - 1) + " were rolled back";
+        }
+        return "Statement " + failed + " failed; " + applied + " applied because schema changes commit at once, "
+                + undone + ": " + failure;
+    }
+
+    private static boolean isDdl(SqlStatement statement) {
+        switch (statement.getKind()) {
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+            case "TRUNCATE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Runs the statements in order, adding a section per statement
+     * @return the error that stopped the script, or null when all statements succeeded
+     */
+    private String runStatements(Connection connection, List<SqlStatement> statements, DatasetVersion dataset,
+                                 QueryContext context, List<QueryResponse> results) throws SQLException {
+        int i = 0;
+        while (i < statements.size()) {
+            int end = i + 1;
+            if (isBatchable(statements.get(i))) {
+                while (end < statements.size() && isBatchable(statements.get(end))) {
+                    end++;
+                }
+            }
+
+            List<QueryAdmission.Permit> permits = new ArrayList<>();
+            try (Statement statement = connection.createStatement()) {
+                for (int j = i; j < end; j++) {
+                    try {
+                        permits.add(queryAdmission.admit(statements.get(j), connection, dataset));
+                    } catch (QueryLimitExceededException e) {
+                        if (j == i) {
+                            throw e;
+                        }
+                        // Run the batch up to the refused statement; it is refused again on its own
+                        end = j;
+                        break;
+                    }
+                }
+                List<SqlStatement> group = statements.subList(i, end);
+                SqlStatement first = group.get(0);
+                QueryBudget budget = queryGovernor.budgetFor(context, first.getKind());
+                if (group.size() > 1) {
+                    executeBatch(statement, group, budget, context.getOwner(), results);
+                } else {
+                    results.add(queryGovernor.supervise(statement, budget, context.getOwner(),
+                            () -> dispatch(statement, first.getSql(), first.getKind(), budget, context.isColumnar())));
+                }
+            } catch (QueryLimitExceededException e) {
+                results.add(QueryResponse.builder()
+                        .success(false)
+                        .queryType(statements.get(results.size()).getKind())
+                        .message(e.getMessage())
+                        .limitHit(e.getLimit())
+                        .build());
+                return e.getMessage();
+            } catch (SQLException e) {
+                results.add(QueryResponse.builder()
+                        .success(false)
+                        .queryType(statements.get(results.size()).getKind())
+                        .message(e.getMessage())
+                        .build());
+                return e.getMessage();
+            } finally {
+                permits.forEach(QueryAdmission.Permit::close);
+            }
+            i = end;
+        }
+        return null;
+    }
+
+    /**
+     * Sends a run of INSERT/UPDATE statements in one round trip; on failure the sections
+     * of the statements before the failing one are kept
+     */
+    private void executeBatch(Statement statement, List<SqlStatement> group, QueryBudget budget, String owner,
+                              List<QueryResponse> results) throws SQLException {
+        for (SqlStatement sql : group) {
+            statement.addBatch(sql.getSql());
+        }
+        int[] counts;
+        try {
+            counts = queryGovernor.supervise(statement, budget, owner, statement::executeBatch);
+        } catch (BatchUpdateException e) {
+            int[] partial = e.getUpdateCounts();
+            for (int j = 0; j < partial.length && partial[j] != Statement.EXECUTE_FAILED; j++) {
+                results.add(batchSection(group.get(j), partial[j]));
+            }
+            throw e;
+        }
+        for (int j = 0; j < counts.length; j++) {
+            results.add(batchSection(group.get(j), counts[j]));
+        }
+    }
+
+    private QueryResponse batchSection(SqlStatement statement, int count) {
+        String message = count == Statement.SUCCESS_NO_INFO
+                ? "Statement executed successfully"
+                : count + " row(s) affected";
+        return QueryResponse.builder()
+                .success(true)
+                .queryType(statement.getKind())
+                .headers(List.of("Result"))
+                .rows(List.of(List.of(message)))
+                .rowCount(Math.max(count, 0))
+                .message(message)
+                .build();
+    }
+
+    private static boolean isBatchable(SqlStatement statement) {
+        return "INSERT".equals(statement.getKind()) || "UPDATE".equals(statement.getKind());
+    }
+
+    /**
+     * Drops the owner's sandbox so their next query starts from the tutorial snapshot
+     */
+    public void resetSandbox(String owner) {
+        sandboxManager.release(owner);
+    }
+
+    /**
+     * Cancels the owner's running statements
+     * @return true if a running statement was cancelled
+     */
+    public boolean cancelQuery(String owner) {
+        return queryGovernor.cancel(owner);
+    }
+
+    private boolean usesSandbox(QueryContext context) {
+        return context.getOwner() != null && sandboxManager.isEnabled();
+    }
+
+    /**
+     * Executes SELECT queries and returns result set, stopping at the row or byte budget.
+     * The columnar format fills typed per-column arrays instead of rows of strings.
+     */
+    private QueryResponse executeSelectQuery(Statement statement, String query, String queryType,
+                                             QueryBudget budget, boolean columnar) throws SQLException {
+        List<String> headers = new ArrayList<>();
+        List<List<String>> rows = new ArrayList<>();
+        ColumnarResultBuilder columns = null;
+        int rowCount = 0;
+        int maxRows = budget.getMaxRows() != null ? budget.getMaxRows() : Integer.MAX_VALUE;
+        long maxBytes = budget.getMaxResultBytes() != null ? budget.getMaxResultBytes() : Long.MAX_VALUE;
+        String limitHit = null;
+
+        if (maxRows < Integer.MAX_VALUE) {
+            // One extra row tells us whether the cap truncated the result
+            statement.setMaxRows(maxRows + 1);
+        }
+
+        try (ResultSet rs = statement.executeQuery(query)) {
+            // Extract headers from metadata once, the column count does not change per row
+            int columnCount = readHeaders(rs.getMetaData(), headers);
+            long bytes = 0;
+            if (columnar) {
+                columns = new ColumnarResultBuilder(rs.getMetaData());
+            }
+
+            while (rs.next()) {
+                if (rowCount == maxRows) {
+                    limitHit = QueryGovernor.ROW_LIMIT;
+                    break;
+                }
+                if (columns != null) {
+                    long rowBytes = columns.append(rs);
+                    bytes += rowBytes;
+                    if (bytes > maxBytes) {
+                        columns.removeLast(rowBytes);
+                        limitHit = QueryGovernor.BYTE_LIMIT;
+                        break;
+                    }
+                    rowCount++;
+                    continue;
+                }
+                List<String> row = new ArrayList<>(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    String value = formatValue(rs.getObject(i));
+                    bytes += value.length();
+                    row.add(value);
+                }
+                if (bytes > maxBytes) {
+                    limitHit = QueryGovernor.BYTE_LIMIT;
+                    break;
+                }
+                rows.add(row);
+                rowCount++;
+            }
+        }
+
+        String message = limitHit == null
+                ? rowCount + " row(s) returned"
+                : "Result truncated at " + rowCount + " row(s) (" + limitHit + ")";
         return QueryResponse.builder()
                 .success(true)
                 .queryType(queryType)
-                .headers(headers)
-                .rows(rows)
-                .rowCount(rows.size())
-                .message(rows.size() + " row(s) returned")
+                .headers(columns != null ? null : headers)
+                .rows(columns != null ? null : rows)
+                .columnar(columns != null ? columns.build() : null)
+                .rowCount(rowCount)
+                .message(message)
+                .limitHit(limitHit)
+                .truncated(limitHit != null ? Boolean.TRUE : null)
                 .build();
     }
 
     /**
      * Executes INSERT, UPDATE, DELETE queries
      */
-    private QueryResponse executeDMLQuery(String query, String queryType) {
-        int affectedRows = jdbcTemplate.update(query);
+    private QueryResponse executeDMLQuery(Statement statement, String query, String queryType) throws SQLException {
+        int affectedRows = statement.executeUpdate(query);
 
         return QueryResponse.builder()
                 .success(true)
@@ -111,8 +626,8 @@ public class QueryExecutionService {
     /**
      * Executes DDL queries (CREATE, ALTER, DROP, etc.)
      */
-    private QueryResponse executeDDLQuery(String query, String queryType) {
-        jdbcTemplate.execute(query);
+    private QueryResponse executeDDLQuery(Statement statement, String query, String queryType) throws SQLException {
+        statement.execute(query);
 
         return QueryResponse.builder()
                 .success(true)
@@ -127,8 +642,8 @@ public class QueryExecutionService {
     /**
      * Executes other query types
      */
-    private QueryResponse executeGenericQuery(String query, String queryType) {
-        jdbcTemplate.execute(query);
+    private QueryResponse executeGenericQuery(Statement statement, String query, String queryType) throws SQLException {
+        statement.execute(query);
 
         return QueryResponse.builder()
                 .success(true)
@@ -141,23 +656,230 @@ public class QueryExecutionService {
     }
 
     /**
-     * Detects the type of SQL query
+     * Executes a SQL query and streams the result as NDJSON while the ResultSet advances.
+     * The first line is a header object, every row is a JSON array and the last line is
+     * a summary object, so memory stays flat no matter how many rows the query returns.
+     * Runtime failures such as SandboxUnavailableException are rethrown without writing
+     * anything, so the caller can still answer with an error status.
      */
-    private String detectQueryType(String query) {
-        String upperQuery = query.toUpperCase().trim();
-        
-        if (upperQuery.startsWith("SELECT")) return "SELECT";
-        if (upperQuery.startsWith("INSERT")) return "INSERT";
-        if (upperQuery.startsWith("UPDATE")) return "UPDATE";
-        if (upperQuery.startsWith("DELETE")) return "DELETE";
-        if (upperQuery.startsWith("CREATE")) return "CREATE";
-        if (upperQuery.startsWith("ALTER")) return "ALTER";
-        if (upperQuery.startsWith("DROP")) return "DROP";
-        if (upperQuery.startsWith("TRUNCATE")) return "TRUNCATE";
-        if (upperQuery.startsWith("SHOW")) return "SHOW";
-        if (upperQuery.startsWith("DESCRIBE") || upperQuery.startsWith("DESC")) return "DESCRIBE";
-        if (upperQuery.startsWith("EXPLAIN")) return "EXPLAIN";
-        
-        return "UNKNOWN";
+    public void streamQuery(String query, QueryContext context, OutputStream out) throws IOException {
+        String trimmedQuery = query.trim();
+        List<SqlStatement> statements = SqlLexer.lex(trimmedQuery);
+        SqlStatement statement = statements.isEmpty() ? SqlLexer.analyze(trimmedQuery) : statements.get(0);
+        String queryType = statement.getKind();
+
+        log.info("Streaming {} query: {}", queryType, trimmedQuery);
+
+        JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+
+        if (statements.size() > 1 || !statement.isPlainRead()) {
+            // executeQuery refuses several statements, records writes and keeps the history of these itself
+            QueryResponse response;
+            try {
+                response = executeQuery(trimmedQuery, context);
+            } catch (DataAccessException e) {
+                writeStreamLine(json, "error", null, e.getMostSpecificCause().getMessage());
+                json.flush();
+                return;
+            } catch (SQLException e) {
+                writeStreamLine(json, "error", null, e.getMessage());
+                json.flush();
+                return;
+            }
+            writeBufferedResponse(json, response);
+            json.flush();
+            return;
+        }
+
+        long startedAt = System.nanoTime();
+        Integer rowCount = null;
+        QueryResponse failure = null;
+        boolean rethrown = false;
+        try {
+            QueryBudget budget = queryGovernor.budgetFor(context, queryType);
+            if (usesSandbox(context)) {
+                try (SandboxManager.Lease lease = sandboxManager.acquire(context.getOwner());
+                     QueryAdmission.Permit permit = queryAdmission.admit(statement, lease.getJdbcTemplate(),
+                             lease.getSandbox().getDatasetVersion())) {
+                    rowCount = streamSelectQuery(json, trimmedQuery, queryType, lease.getJdbcTemplate(), budget,
+                            context.getOwner());
+                }
+            } else {
+                try (QueryAdmission.Permit permit = queryAdmission.admit(statement, jdbcTemplate, sharedDataset)) {
+                    rowCount = streamSelectQuery(json, trimmedQuery, queryType, jdbcTemplate, budget,
+                            context.getOwner());
+                }
+            }
+
+        } catch (UncheckedIOException e) {
+            // Client went away mid-stream; closing the ResultSet releases the connection
+            log.warn("Streaming aborted: {}", e.getMessage());
+            failure = failedResponse(queryType, "Client disconnected: " + e.getMessage(), null);
+            rethrown = true;
+            throw e.getCause();
+        } catch (QueryLimitExceededException e) {
+            log.warn("Streaming stopped ({}): {}", e.getLimit(), e.getMessage());
+            failure = failedResponse(queryType, e.getMessage(), e.getLimit());
+            writeStreamLine(json, "error", null, e.getMessage());
+        } catch (DataAccessException e) {
+            log.error("Query execution failed: {}", e.getMessage());
+            failure = failedResponse(queryType, e.getMostSpecificCause().getMessage(), null);
+            writeStreamLine(json, "error", null, e.getMostSpecificCause().getMessage());
+        } catch (RuntimeException e) {
+            // No sandbox or pool saturated: the caller maps these to a status, so nothing is flushed
+            failure = failedResponse(queryType, e.getMessage(), null);
+            rethrown = true;
+            throw e;
+        } finally {
+            if (!rethrown) {
+                json.flush();
+            }
+            // Same history as /executeQuery
+            QueryResponse outcome = failure != null ? failure
+                    : QueryResponse.builder().success(true).queryType(queryType).rowCount(rowCount).build();
+            recordHistory(context, trimmedQuery, outcome, failure != null ? failure.getMessage() : null, startedAt);
+        }
+    }
+
+    private static QueryResponse failedResponse(String queryType, String message, String limitHit) {
+        return QueryResponse.builder()
+                .success(false)
+                .queryType(queryType)
+                .message(message)
+                .limitHit(limitHit)
+                .build();
+    }
+
+    /**
+     * Runs a result-producing query with a forward-only cursor and streams its rows.
+     * The budget's wall time applies; the stream's own row cap replaces the row budget.
+     * @return the number of rows streamed
+     */
+    private int streamSelectQuery(JsonGenerator json, String query, String queryType, JdbcTemplate template,
+                                  QueryBudget budget, String owner) {
+        return template.execute((Connection connection) -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(streamFetchSize);
+                // One extra row tells us whether the cap truncated the result
+                statement.setMaxRows(streamMaxRows + 1);
+                return queryGovernor.supervise(statement, budget, owner, () -> {
+                    try (ResultSet rs = statement.executeQuery()) {
+                        return streamResultSet(json, rs, queryType);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Writes header, rows and summary lines for an open ResultSet and returns the row count
+     */
+    private int streamResultSet(JsonGenerator json, ResultSet rs, String queryType) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+
+        json.writeStartObject();
+        json.writeStringField("type", "header");
+        json.writeStringField("queryType", queryType);
+        json.writeArrayFieldStart("headers");
+        for (int i = 1; i <= columnCount; i++) {
+            json.writeString(metaData.getColumnName(i));
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeRaw('\n');
+
+        int rowCount = 0;
+        boolean truncated = false;
+        while (rs.next()) {
+            if (rowCount == streamMaxRows) {
+                truncated = true;
+                break;
+            }
+            json.writeStartArray();
+            for (int i = 1; i <= columnCount; i++) {
+                json.writeString(formatValue(rs.getObject(i)));
+            }
+            json.writeEndArray();
+            json.writeRaw('\n');
+
+            if (++rowCount % streamFetchSize == 0) {
+                json.flush();
+            }
+        }
+
+        String message = truncated
+                ? "Result truncated at " + rowCount + " row(s)"
+                : rowCount + " row(s) returned";
+        json.writeStartObject();
+        json.writeStringField("type", "end");
+        json.writeNumberField("rowCount", rowCount);
+        json.writeBooleanField("truncated", truncated);
+        json.writeStringField("message", message);
+        json.writeEndObject();
+        json.writeRaw('\n');
+        return rowCount;
+    }
+
+    /**
+     * Writes an already materialized response (DML/DDL results) in the streaming line format
+     */
+    private void writeBufferedResponse(JsonGenerator json, QueryResponse response) throws IOException {
+        if (!response.isSuccess()) {
+            // Stopped, rejected and failed statements have no headers or rows
+            writeStreamLine(json, "error", null, response.getMessage());
+            return;
+        }
+        json.writeStartObject();
+        json.writeStringField("type", "header");
+        json.writeStringField("queryType", response.getQueryType());
+        json.writeObjectField("headers", response.getHeaders());
+        json.writeEndObject();
+        json.writeRaw('\n');
+
+        if (response.getRows() != null) {
+            for (List<String> row : response.getRows()) {
+                json.writeObject(row);
+                json.writeRaw('\n');
+            }
+        }
+        writeStreamLine(json, "end", response.getRowCount(), response.getMessage());
+    }
+
+    /**
+     * Writes a single summary or error line
+     */
+    private void writeStreamLine(JsonGenerator json, String type, Integer rowCount, String message) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type", type);
+        if (rowCount != null) {
+            json.writeNumberField("rowCount", rowCount);
+        }
+        json.writeStringField("message", message);
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    /**
+     * Reads column names into headers and returns the column count
+     */
+    private int readHeaders(ResultSetMetaData metaData, List<String> headers) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        for (int i = 1; i <= columnCount; i++) {
+            headers.add(metaData.getColumnName(i));
+        }
+        return columnCount;
+    }
+
+    /**
+     * Renders a column value the way QueryResponse rows expect it
+     */
+    private String formatValue(Object value) {
+        return value != null ? value.toString() : "NULL";
     }
 }
@@ -0,0 +1,262 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.config.QueryBudgetProperties;
+import com.leetquery.backend.exception.QueryLimitExceededException;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.QueryBudget;
+import com.leetquery.backend.model.QueryContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Enforces per-query budgets: wall time, returned rows and result bytes.
+ * A watchdog cancels the running Statement once its deadline passes, and
+ * users can cancel their own running statements.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryGovernor {
+
+    public static final String TIMEOUT = "TIMEOUT";
+    public static final String ROW_LIMIT = "ROW_LIMIT";
+    public static final String BYTE_LIMIT = "BYTE_LIMIT";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String REJECTED = "REJECTED";
+
+    private final QueryBudgetProperties properties;
+    private final CatalogService catalogService;
+
+    private final Map<String, Set<Watch>> running = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor watchdog = createWatchdog();
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Effective budget for a query: each limit is the tighter of the tier and the
+     * challenge type setting, falling back to the defaults when neither sets it
+     */
+    public QueryBudget budgetFor(QueryContext context, String queryType) {
+        QueryBudget tier = lookup(properties.getTiers(), context.getTier());
+        QueryBudget type = lookup(properties.getChallengeTypes(), challengeTypeOf(context, queryType));
+        QueryBudget defaults = properties.getDefaults();
+
+        return QueryBudget.builder()
+                .timeoutMs(merge(defaults, tier, type, QueryBudget::getTimeoutMs))
+                .maxRows(merge(defaults, tier, type, QueryBudget::getMaxRows))
+                .maxResultBytes(merge(defaults, tier, type, QueryBudget::getMaxResultBytes))
+                .build();
+    }
+
+    /**
+     * Runs work against a statement under the budget's wall time.
+     * A statement cancelled by the watchdog or the user surfaces as QueryLimitExceededException.
+     */
+    public <T> T supervise(Statement statement, QueryBudget budget, String owner, SqlWork<T> work) throws SQLException {
+        Watch watch = new Watch(statement);
+        long timeoutMs = budget.getTimeoutMs() != null ? budget.getTimeoutMs() : 0;
+        if (timeoutMs > 0) {
+            // Driver-side timeout as a backstop; the watchdog gives millisecond precision
+            statement.setQueryTimeout((int) Math.max(1, (timeoutMs + 999) / 1000));
+            watch.deadline = watchdog.schedule(() -> watch.cancel(TIMEOUT), timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        if (owner != null) {
+            running.computeIfAbsent(owner, key -> ConcurrentHashMap.newKeySet()).add(watch);
+        }
+
+        try {
+            return work.run();
+        } catch (SQLException e) {
+            String reason = watch.finish();
+            if (reason == null && e instanceof SQLTimeoutException) {
+                reason = TIMEOUT;
+            }
+            if (reason != null) {
+                throw new QueryLimitExceededException(reason, describe(reason, timeoutMs), e);
+            }
+            throw e;
+        } finally {
+            // Before anything else, so a late watchdog or user cancel cannot hit the statement's next use
+            watch.finish();
+            if (watch.deadline != null) {
+                watch.deadline.cancel(false);
+            }
+            if (owner != null) {
+                running.computeIfPresent(owner, (key, watches) -> {
+                    watches.remove(watch);
+                    return watches.isEmpty() ? null : watches;
+                });
+            }
+        }
+    }
+
+    /**
+     * Cancels every statement the owner is currently running
+     * @return true if at least one statement was cancelled
+     */
+    public boolean cancel(String owner) {
+        Set<Watch> watches = running.get(owner);
+        if (watches == null) {
+            return false;
+        }
+        boolean cancelled = false;
+        for (Watch watch : watches) {
+            cancelled |= watch.cancel(CANCELLED);
+        }
+        return cancelled;
+    }
+
+    /**
+     * The challenge type of the request's challenge, or the category of the statement itself
+     */
+    private String challengeTypeOf(QueryContext context, String queryType) {
+        if (context.getChallengeId() != null) {
+            Challenge challenge = catalogService.snapshot().getChallenge(context.getChallengeId());
+            if (challenge != null && challenge.getChallengeType() != null) {
+                return challenge.getChallengeType();
+            }
+        }
+        return categoryOf(queryType);
+    }
+
+    /**
+     * Maps a statement type onto the challenge_type vocabulary
+     */
+    static String categoryOf(String queryType) {
+        switch (queryType) {
+            case "SELECT":
+            case "SHOW":
+            case "DESCRIBE":
+            case "EXPLAIN":
+                return "DQL";
+            case "INSERT":
+            case "UPDATE":
+            case "DELETE":
+            case "MERGE":
+                return "DML";
+            case "CREATE":
+            case "ALTER":
+            case "DROP":
+            case "TRUNCATE":
+                return "DDL";
+            case "COMMIT":
+            case "ROLLBACK":
+            case "SAVEPOINT":
+                return "TCL";
+            case "GRANT":
+            case "REVOKE":
+                return "DCL";
+            default:
+                return null;
+        }
+    }
+
+    private static QueryBudget lookup(Map<String, QueryBudget> budgets, String key) {
+        if (key == null) {
+            return null;
+        }
+        QueryBudget budget = budgets.get(key);
+        if (budget == null) {
+            budget = budgets.get(key.toLowerCase(Locale.ROOT));
+        }
+        if (budget == null) {
+            budget = budgets.get(key.toUpperCase(Locale.ROOT));
+        }
+        return budget;
+    }
+
+    private static <V extends Comparable<V>> V merge(QueryBudget defaults, QueryBudget tier, QueryBudget type,
+                                                     Function<QueryBudget, V> limit) {
+        V fromTier = tier != null ? limit.apply(tier) : null;
+        V fromType = type != null ? limit.apply(type) : null;
+        if (fromTier == null && fromType == null) {
+            return limit.apply(defaults);
+        }
+        if (fromTier == null) {
+            return fromType;
+        }
+        if (fromType == null) {
+            return fromTier;
+        }
+        return fromTier.compareTo(fromType) <= 0 ? fromTier : fromType;
+    }
+
+    private static String describe(String reason, long timeoutMs) {
+        if (CANCELLED.equals(reason)) {
+            return "Query cancelled";
+        }
+        return "Query exceeded the time limit of " + timeoutMs + " ms";
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "query-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Unit of JDBC work run under supervision
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run() throws SQLException;
+    }
+
+    /**
+     * A running statement and why it was stopped, if it was
+     */
+    private static final class Watch {
+        private final Statement statement;
+        private volatile ScheduledFuture<?> deadline;
+        private volatile String reason;
+        // Guarded by this; set once the work has returned or thrown
+        private boolean done;
+
+        private Watch(Statement statement) {
+            this.statement = statement;
+        }
+
+        /**
+         * Stops later cancels from reaching the statement and returns why it was cancelled, if it was
+         */
+        private synchronized String finish() {
+            done = true;
+            return reason;
+        }
+
+        private synchronized boolean cancel(String why) {
+            if (done || reason != null) {
+                return false;
+            }
+            reason = why;
+            try {
+                statement.cancel();
+                return true;
+            } catch (SQLException e) {
+                log.warn("Failed to cancel statement: {}", e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.model.QueryExecutionRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind pipeline for the query_executions history table.
+ *
+ * Requests only enqueue into a bounded queue; a background thread writes batches once
+ * batch-size records are waiting or flush-interval-ms has passed. Past three quarters of
+ * capacity only every busy-sample-rate'th record is kept, and a full queue drops records,
+ * so history capture never blocks a request.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryHistoryWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO query_executions (user_id, problem_id, challenge_id, query, status, error_message, " +
+            "result_rows, execution_time_ms, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.query.history.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.query.history.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.query.history.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.query.history.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Value("${app.query.history.busy-sample-rate:10}")
+    private int busySampleRate;
+
+    private BlockingQueue<QueryExecutionRecord> queue;
+    private final AtomicLong busyArrivals = new AtomicLong();
+    // Queued or being written; lets flushAll wait for the batch the flusher holds
+    private final AtomicLong pending = new AtomicLong();
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter written;
+    private Counter dropped;
+    private Counter sampledOut;
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        written = meterRegistry.counter("query.history.written");
+        dropped = meterRegistry.counter("query.history.dropped");
+        sampledOut = meterRegistry.counter("query.history.sampled.out");
+        meterRegistry.gauge("query.history.queue.size", queue, BlockingQueue::size);
+
+        if (enabled) {
+            running = true;
+            flusher = new Thread(this::runFlusher, "query-history-writer");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(flushIntervalMs + 5000);
+        }
+        // Whatever is still queued gets one last chance
+        flushAll();
+    }
+
+    /**
+     * Queues an execution for the history table without blocking
+     */
+    public void record(QueryExecutionRecord record) {
+        if (!enabled) {
+            return;
+        }
+        if (queue.size() >= queueCapacity * 3 / 4 && busyArrivals.incrementAndGet() % busySampleRate != 0) {
+            sampledOut.increment();
+            return;
+        }
+        pending.incrementAndGet();
+        if (!queue.offer(record)) {
+            pending.decrementAndGet();
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Writes everything queued so far and waits for the flusher's current batch; used on shutdown and by tests
+     */
+    public void flushAll() {
+        List<QueryExecutionRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs + 5000);
+        while (pending.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runFlusher() {
+        List<QueryExecutionRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    QueryExecutionRecord record = queue.poll(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+                    if (record == null) {
+                        break;
+                    }
+                    batch.add(record);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // Records polled before the interrupt must not be lost
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<QueryExecutionRecord> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, record) -> {
+                ps.setLong(1, record.getUserId());
+                if (record.getProblemId() != null) {
+                    ps.setLong(2, record.getProblemId());
+                } else {
+                    ps.setNull(2, Types.BIGINT);
+                }
+                if (record.getChallengeId() != null) {
+                    ps.setLong(3, record.getChallengeId());
+                } else {
+                    ps.setNull(3, Types.BIGINT);
+                }
+                ps.setString(4, record.getQuery());
+                ps.setString(5, record.getStatus());
+                ps.setString(6, record.getErrorMessage());
+                if (record.getResultRows() != null) {
+                    ps.setInt(7, record.getResultRows());
+                } else {
+                    ps.setNull(7, Types.INTEGER);
+                }
+                ps.setLong(8, record.getExecutionTimeMs());
+                ps.setTimestamp(9, Timestamp.valueOf(record.getCreatedAt()));
+            });
+            written.increment(batch.size());
+        } catch (Exception e) {
+            // History is best effort; a failed batch is dropped rather than retried
+            log.warn("Failed to write {} query execution record(s): {}", batch.size(), e.getMessage());
+            dropped.increment(batch.size());
+        } finally {
+            pending.addAndGet(-batch.size());
+        }
+    }
+}
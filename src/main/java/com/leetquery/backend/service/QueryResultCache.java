@@ -0,0 +1,170 @@
+package com.leetquery.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.leetquery.backend.model.QueryResponse;
+import com.leetquery.backend.util.SqlStatement;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Bounded read-through cache for SELECTs over the read-only tutorial tables.
+ *
+ * Entries are keyed by normalized SQL plus the dataset scope the query reads from, so
+ * pristine sandboxes share one copy of each result. Every statement that is not a plain read
+ * (DML, DDL, EXPLAIN ANALYZE, a SELECT over OLD/NEW/FINAL TABLE) bumps the dataset's version
+ * and evicts the affected entries. Eviction is by approximate result size in bytes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class QueryResultCache {
+
+    // Functions whose output differs between runs or sessions
+    private static final Set<String> NONDETERMINISTIC = Set.of(
+            "rand", "random", "random_uuid", "uuid", "secure_rand", "now", "sysdate", "systimestamp",
+            "current_timestamp", "current_date", "current_time", "localtime", "localtimestamp", "today",
+            "nextval", "currval", "user", "current_user", "session_user", "session_id", "transaction_id",
+            "memory_free", "memory_used");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.query.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.query.cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${app.query.cache.tables:students,courses,departments,instructors,enrollments}")
+    private String[] tables;
+
+    private Set<String> tutorialTables;
+    private Cache<Key, QueryResponse> cache;
+    private Counter invalidations;
+
+    @PostConstruct
+    public void init() {
+        tutorialTables = new HashSet<>();
+        for (String table : tables) {
+            tutorialTables.add(table.trim().toLowerCase(Locale.ROOT));
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(QueryResultCache::weigh)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "queryResults");
+        invalidations = meterRegistry.counter("query.results.invalidations");
+    }
+
+    /**
+     * Cache key for a SELECT against the dataset, or null if the query is not cacheable.
+     * Row and columnar results of the same query are cached separately.
+     */
+    public Key keyFor(SqlStatement statement, DatasetVersion dataset, boolean columnar) {
+        Set<String> referenced = statement.getTables();
+
+        // Only deterministic plain reads of tutorial tables and nothing else
+        if (!enabled || !statement.isPlainRead() || referenced.isEmpty()
+                || !tutorialTables.containsAll(referenced)
+                || !Collections.disjoint(statement.getFunctions(), NONDETERMINISTIC)) {
+            return null;
+        }
+
+        String scope = dataset.scopeFor(referenced);
+        String owner = DatasetVersion.SNAPSHOT.equals(scope) ? DatasetVersion.SNAPSHOT : dataset.getId();
+        return new Key(owner, scope, statement.getNormalized(), referenced, columnar);
+    }
+
+    public QueryResponse get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(Key key, QueryResponse response) {
+        cache.put(key, response);
+    }
+
+    /**
+     * Records a completed statement: unless it was a plain read, bumps the dataset version and
+     * evicts what it touched
+     */
+    public void recordWrite(SqlStatement statement, DatasetVersion dataset) {
+        if (statement.isPlainRead()) {
+            return;
+        }
+        String category = QueryGovernor.categoryOf(statement.getKind());
+
+        // DML names every table it can change; the tables it only reads are bumped too
+        if ("DML".equals(category) && !statement.getTables().isEmpty()) {
+            dataset.tablesWritten(statement.getTables());
+            evict(dataset.getId(), statement.getTables());
+            return;
+        }
+
+        // DDL, reads with hidden writes and anything we cannot attribute to specific tables
+        // invalidate the whole dataset
+        dataset.structureChanged();
+        evict(dataset.getId(), null);
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    private void evict(String datasetId, Set<String> written) {
+        if (written != null && Collections.disjoint(written, tutorialTables)) {
+            return;
+        }
+        boolean removed = cache.asMap().keySet().removeIf(key -> key.datasetId.equals(datasetId)
+                && (written == null || !Collections.disjoint(key.tables, written)));
+        if (removed) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Approximate retained size of a cached response in bytes
+     */
+    private static int weigh(Key key, QueryResponse response) {
+        long bytes = 64 + 2L * key.sql.length();
+        if (response.getHeaders() != null) {
+            for (String header : response.getHeaders()) {
+                bytes += 40 + 2L * header.length();
+            }
+        }
+        if (response.getColumnar() != null) {
+            bytes += response.getColumnar().getByteSize() + 24L * response.getRowCount();
+        }
+        if (response.getRows() != null) {
+            for (List<String> row : response.getRows()) {
+                bytes += 32;
+                for (String value : row) {
+                    bytes += 40 + 2L * value.length();
+                }
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Normalized SQL within a dataset scope; datasetId is the scope's owner for eviction
+     */
+    public record Key(String datasetId, String scope, String sql, Set<String> tables, boolean columnar) {
+    }
+}
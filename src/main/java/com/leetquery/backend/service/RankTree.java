@@ -0,0 +1,155 @@
+package com.leetquery.backend.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted set that also answers "how many elements come before this one" and "elements i to j"
+ * in O(log n): a treap whose nodes count the elements below them. Not thread-safe.
+ */
+final class RankTree<T> {
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    RankTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * @return false when an equal element is already present
+     */
+    boolean add(T value) {
+        if (rank(value) >= 0) {
+            return false;
+        }
+        Split<T> split = split(root, value, false);
+        root = merge(merge(split.left, new Node<>(value, ThreadLocalRandom.current().nextInt())), split.right);
+        return true;
+    }
+
+    /**
+     * @return false when no equal element was present
+     */
+    boolean remove(T value) {
+        Split<T> below = split(root, value, false);
+        Split<T> equal = split(below.right, value, true);
+        root = merge(below.left, equal.right);
+        return equal.left != null;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    /**
+     * Number of elements ordered before value, or -1 when value is not present
+     */
+    int rank(T value) {
+        int before = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                before += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return before + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Up to count elements in order, starting with the one at index from
+     */
+    List<T> range(int from, int count) {
+        List<T> out = new ArrayList<>(Math.max(0, Math.min(count, size() - from)));
+        collect(root, from, from + count, 0, out);
+        return out;
+    }
+
+    private void collect(Node<T> node, int from, int to, int offset, List<T> out) {
+        if (node == null || offset >= to || offset + node.size <= from) {
+            return;
+        }
+        int index = offset + size(node.left);
+        collect(node.left, from, to, offset, out);
+        if (index >= from && index < to) {
+            out.add(node.value);
+        }
+        collect(node.right, from, to, index + 1, out);
+    }
+
+    /**
+     * Elements before value go left, the rest right; with inclusive, elements equal to value go left too
+     */
+    private Split<T> split(Node<T> node, T value, boolean inclusive) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        int cmp = comparator.compare(node.value, value);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Split<T> rest = split(node.right, value, inclusive);
+            node.right = rest.left;
+            node.update();
+            return new Split<>(node, rest.right);
+        }
+        Split<T> rest = split(node.left, value, inclusive);
+        node.left = rest.right;
+        node.update();
+        return new Split<>(rest.left, node);
+    }
+
+    /**
+     * Joins two trees where every element of left comes before every element of right
+     */
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        Node<T> left;
+        Node<T> right;
+        int size = 1;
+
+        Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+
+    private record Split<T>(Node<T> left, Node<T> right) {
+    }
+}
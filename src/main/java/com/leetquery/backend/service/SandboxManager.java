@@ -0,0 +1,385 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.exception.SandboxUnavailableException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps a pool of isolated in-memory H2 databases seeded with the tutorial data.
+ *
+ * Each learner leases one sandbox for their session, so DML/DDL never touches the shared
+ * database. The tutorial scripts run once into a template database; its SCRIPT output is the
+ * snapshot every sandbox is restored from. Restores happen on a background thread, so leasing
+ * a warm sandbox is a map lookup plus a deque poll.
+ *
+ * Learner statements run as a non-admin H2 user, which keeps admin-only features such as
+ * CREATE ALIAS, RUNSCRIPT and FILE_READ out of reach.
+ */
+@Slf4j
+@Service
+public class SandboxManager {
+
+    private static final String JDBC_URL_PREFIX = "jdbc:h2:mem:sandbox_";
+    private static final String ADMIN_USER = "sa";
+    private static final String LEARNER_USER = "learner";
+    private static final String LEARNER_PASSWORD = "learner";
+
+    @Value("${app.sandbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.sandbox.pool-size:4}")
+    private int poolSize;
+
+    @Value("${app.sandbox.max-sandboxes:1000}")
+    private int maxSandboxes;
+
+    @Value("${app.sandbox.lease-ttl-ms:3600000}")
+    private long leaseTtlMs;
+
+    @Value("${app.sandbox.idle-timeout-ms:900000}")
+    private long idleTimeoutMs;
+
+    @Value("${app.sandbox.eviction-interval-ms:60000}")
+    private long evictionIntervalMs;
+
+    private final AtomicLong sandboxIds = new AtomicLong();
+    private final AtomicInteger sandboxCount = new AtomicInteger();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final Map<String, Sandbox> leases = new ConcurrentHashMap<>();
+    private final BlockingDeque<Sandbox> warmSandboxes = new LinkedBlockingDeque<>();
+
+    private volatile List<String> snapshot = List.of();
+    private ScheduledExecutorService maintenance;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Query sandboxes disabled, queries run against the shared database");
+            return;
+        }
+
+        snapshot = captureSnapshot();
+        log.info("Sandbox snapshot captured ({} statements)", snapshot.size());
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sandbox-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::evictExpiredLeases,
+                evictionIntervalMs, evictionIntervalMs, TimeUnit.MILLISECONDS);
+        scheduleRefill();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        leases.values().forEach(Sandbox::destroy);
+        warmSandboxes.forEach(Sandbox::destroy);
+        leases.clear();
+        warmSandboxes.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Lease the owner's sandbox, creating one from the warm pool on first use.
+     * The returned lease holds the sandbox lock until it is closed.
+     */
+    public Lease acquire(String owner) {
+        while (true) {
+            Sandbox sandbox = leases.get(owner);
+            if (sandbox == null) {
+                Sandbox fresh = takeFreshSandbox();
+                sandbox = leases.putIfAbsent(owner, fresh);
+                if (sandbox == null) {
+                    sandbox = fresh;
+                    fresh.leasedAt = System.currentTimeMillis();
+                    log.debug("Sandbox {} leased to {}", fresh.id, owner);
+                } else {
+                    warmSandboxes.offerFirst(fresh);
+                }
+            }
+
+            sandbox.lock.lock();
+            if (sandbox.retired) {
+                // Evicted between lookup and lock, lease a new one
+                sandbox.lock.unlock();
+                continue;
+            }
+            sandbox.lastUsedAt = System.currentTimeMillis();
+            return new Lease(sandbox);
+        }
+    }
+
+    /**
+     * Give the owner's sandbox back so the next query starts from the pristine snapshot
+     */
+    public void release(String owner) {
+        Sandbox sandbox = leases.remove(owner);
+        if (sandbox != null) {
+            retireAsync(sandbox);
+        }
+    }
+
+    public int getLeasedCount() {
+        return leases.size();
+    }
+
+    public int getWarmCount() {
+        return warmSandboxes.size();
+    }
+
+    private Sandbox takeFreshSandbox() {
+        Sandbox sandbox = warmSandboxes.pollFirst();
+        if (sandbox == null) {
+            sandbox = createSandbox();
+        }
+        scheduleRefill();
+        return sandbox;
+    }
+
+    private Sandbox createSandbox() {
+        if (sandboxCount.incrementAndGet() > maxSandboxes) {
+            sandboxCount.decrementAndGet();
+            throw new SandboxUnavailableException("All query sandboxes are in use. Please try again shortly.");
+        }
+        Sandbox sandbox = new Sandbox(sandboxIds.incrementAndGet());
+        try {
+            sandbox.open();
+            sandbox.restore(snapshot);
+            return sandbox;
+        } catch (SQLException e) {
+            sandbox.destroy();
+            throw new SandboxUnavailableException("Could not prepare a query sandbox", e);
+        }
+    }
+
+    private void scheduleRefill() {
+        if (maintenance != null && warmSandboxes.size() < poolSize && refilling.compareAndSet(false, true)) {
+            maintenance.execute(() -> {
+                try {
+                    while (warmSandboxes.size() < poolSize && sandboxCount.get() < maxSandboxes) {
+                        warmSandboxes.offerLast(createSandbox());
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Sandbox refill stopped: {}", e.getMessage());
+                } finally {
+                    refilling.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Recycle leases that sat idle past the idle timeout or outlived the lease TTL
+     */
+    private void evictExpiredLeases() {
+        long now = System.currentTimeMillis();
+        leases.forEach((owner, sandbox) -> {
+            boolean idle = now - sandbox.lastUsedAt > idleTimeoutMs;
+            boolean expired = now - sandbox.leasedAt > leaseTtlMs;
+            if ((idle || expired) && leases.remove(owner, sandbox)) {
+                log.debug("Evicting sandbox {} of {} (idle={}, expired={})", sandbox.id, owner, idle, expired);
+                retire(sandbox);
+            }
+        });
+    }
+
+    private void retireAsync(Sandbox sandbox) {
+        if (maintenance != null) {
+            maintenance.execute(() -> retire(sandbox));
+        } else {
+            sandbox.destroy();
+        }
+    }
+
+    /**
+     * Wait for in-flight work, then restore the sandbox into the warm pool or drop it
+     */
+    private void retire(Sandbox sandbox) {
+        sandbox.lock.lock();
+        try {
+            sandbox.retired = true;
+        } finally {
+            sandbox.lock.unlock();
+        }
+
+        if (warmSandboxes.size() >= poolSize) {
+            sandbox.destroy();
+            return;
+        }
+        try {
+            Sandbox recycled = sandbox.recycle(snapshot);
+            warmSandboxes.offerLast(recycled);
+        } catch (SQLException e) {
+            log.warn("Could not restore sandbox {}: {}", sandbox.id, e.getMessage());
+            sandbox.destroy();
+        }
+    }
+
+    /**
+     * Run the tutorial scripts once into a template database and keep its SCRIPT output
+     */
+    private List<String> captureSnapshot() {
+        try (Connection template = DriverManager.getConnection(JDBC_URL_PREFIX + "template", ADMIN_USER, "")) {
+            ScriptUtils.executeSqlScript(template, new ClassPathResource("schema.sql"));
+            ScriptUtils.executeSqlScript(template, new ClassPathResource("data.sql"));
+
+            List<String> statements = new ArrayList<>();
+            try (Statement statement = template.createStatement();
+                 ResultSet rs = statement.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS")) {
+                while (rs.next()) {
+                    String sql = rs.getString(1);
+                    // Comments and the admin user are not part of the data
+                    if (!sql.startsWith("--") && !sql.startsWith("CREATE USER")) {
+                        statements.add(sql);
+                    }
+                }
+            }
+            return List.copyOf(statements);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not capture sandbox snapshot", e);
+        }
+    }
+
+    /**
+     * An isolated in-memory database. The admin connection keeps it alive and restores it,
+     * learner statements go through the non-admin connection.
+     */
+    public final class Sandbox {
+        private final long id;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long leasedAt = System.currentTimeMillis();
+        private volatile long lastUsedAt = leasedAt;
+        private volatile boolean retired;
+        private final DatasetVersion datasetVersion;
+
+        private Connection adminConnection;
+        private Connection learnerConnection;
+        private JdbcTemplate jdbcTemplate;
+
+        private Sandbox(long id) {
+            this.id = id;
+            // Every restore starts a new data history, so recycled sandboxes get a fresh version
+            this.datasetVersion = new DatasetVersion("sandbox-" + id, true);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public JdbcTemplate getJdbcTemplate() {
+            return jdbcTemplate;
+        }
+
+        public DatasetVersion getDatasetVersion() {
+            return datasetVersion;
+        }
+
+        private void open() throws SQLException {
+            adminConnection = DriverManager.getConnection(JDBC_URL_PREFIX + id, ADMIN_USER, "");
+        }
+
+        private void restore(List<String> statements) throws SQLException {
+            if (learnerConnection != null) {
+                learnerConnection.close();
+            }
+            try (Statement statement = adminConnection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                for (String sql : statements) {
+                    statement.addBatch(sql);
+                }
+                statement.addBatch("CREATE USER " + LEARNER_USER + " PASSWORD '" + LEARNER_PASSWORD + "'");
+                statement.addBatch("GRANT ALTER ANY SCHEMA TO " + LEARNER_USER);
+                statement.addBatch("GRANT SELECT, INSERT, UPDATE, DELETE ON SCHEMA PUBLIC TO " + LEARNER_USER);
+                statement.executeBatch();
+            }
+            learnerConnection = DriverManager.getConnection(JDBC_URL_PREFIX + id, LEARNER_USER, LEARNER_PASSWORD);
+            jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(learnerConnection, true));
+        }
+
+        /**
+         * Restore the snapshot into a fresh Sandbox object sharing this database
+         */
+        private Sandbox recycle(List<String> statements) throws SQLException {
+            Sandbox recycled = new Sandbox(id);
+            recycled.adminConnection = adminConnection;
+            recycled.learnerConnection = learnerConnection;
+            recycled.restore(statements);
+            return recycled;
+        }
+
+        private void destroy() {
+            sandboxCount.decrementAndGet();
+            closeQuietly(learnerConnection);
+            closeQuietly(adminConnection);
+        }
+
+        private void closeQuietly(Connection connection) {
+            if (connection == null) {
+                return;
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.debug("Error closing sandbox {} connection: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Exclusive use of a sandbox for one request
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Sandbox sandbox;
+
+        private Lease(Sandbox sandbox) {
+            this.sandbox = sandbox;
+        }
+
+        public Sandbox getSandbox() {
+            return sandbox;
+        }
+
+        public JdbcTemplate getJdbcTemplate() {
+            return sandbox.getJdbcTemplate();
+        }
+
+        @Override
+        public void close() {
+            sandbox.lastUsedAt = System.currentTimeMillis();
+            sandbox.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.leetquery.backend.service;
+
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.Problem;
+import com.leetquery.backend.model.SearchHit;
+import com.leetquery.backend.model.Stage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keyword search over problems and tutorial challenges, answered from an in-memory inverted index.
+ *
+ * Each term maps to the documents containing it with a weight; title words count more than
+ * description words. Terms are kept sorted, so a query word also matches every term it is a
+ * prefix of. The index follows the catalog: each CatalogRefreshedEvent is diffed against the
+ * indexed documents and only added, changed or removed documents touch the postings.
+ */
+@Slf4j
+@Service
+public class SearchIndex {
+
+    public static final String PROBLEM = "problem";
+    public static final String CHALLENGE = "challenge";
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}_]+");
+    private static final int TITLE_WEIGHT = 3;
+    // Whole-word matches rank above prefix matches
+    private static final int EXACT_BONUS = 2;
+
+    @Value("${app.search.max-prefix-terms:200}")
+    private int maxPrefixTerms;
+
+    @Value("${app.search.default-limit:20}")
+    private int defaultLimit;
+
+    @Value("${app.search.max-limit:100}")
+    private int maxLimit;
+
+    private final ConcurrentSkipListMap<String, Map<String, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onCatalogRefreshed(CatalogRefreshedEvent event) {
+        update(event.snapshot());
+    }
+
+    /**
+     * Brings the index in line with the snapshot. Readers keep searching while this runs and may
+     * briefly see a document that is halfway through being re-indexed.
+     */
+    synchronized void update(CatalogSnapshot catalog) {
+        long started = System.nanoTime();
+        Map<String, Document> current = new HashMap<>();
+        for (Stage stage : catalog.getStages()) {
+            for (Problem problem : catalog.getProblemsByStage(stage.getId())) {
+                Document document = new Document(PROBLEM, problem.getId(), problem.getTitle(), stage.getId(),
+                        null, null, null, problem.getDescription());
+                current.put(document.key(), document);
+            }
+        }
+        for (int levelId : catalog.getLevels()) {
+            for (Challenge challenge : catalog.getChallenges(levelId)) {
+                Document document = new Document(CHALLENGE, challenge.getId(), challenge.getStageTitle(), null,
+                        levelId, challenge.getStageNumber(), challenge.getDifficulty(), challenge.getDescription());
+                current.put(document.key(), document);
+            }
+        }
+
+        int removed = 0;
+        for (Document indexed : new ArrayList<>(documents.values())) {
+            if (!current.containsKey(indexed.key())) {
+                remove(indexed);
+                removed++;
+            }
+        }
+        int added = 0;
+        for (Document document : current.values()) {
+            Document indexed = documents.get(document.key());
+            if (!document.equals(indexed)) {
+                if (indexed != null) {
+                    remove(indexed);
+                }
+                add(document);
+                added++;
+            }
+        }
+        if (added > 0 || removed > 0) {
+            log.info("Search index updated: {} document(s) indexed, {} removed, {} term(s) in {} ms",
+                    added, removed, postings.size(), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    private void add(Document document) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : terms(document.title())) {
+            weights.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : terms(document.text())) {
+            weights.merge(term, 1, Integer::sum);
+        }
+        // Postings first, so a document is never listed without being searchable
+        weights.forEach((term, weight) ->
+                postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>()).put(document.key(), weight));
+        documents.put(document.key(), document);
+    }
+
+    private void remove(Document document) {
+        documents.remove(document.key());
+        Set<String> terms = new LinkedHashSet<>(terms(document.title()));
+        terms.addAll(terms(document.text()));
+        for (String term : terms) {
+            postings.computeIfPresent(term, (t, docs) -> {
+                docs.remove(document.key());
+                return docs.isEmpty() ? null : docs;
+            });
+        }
+    }
+
+    /**
+     * Documents containing every word of the query, as a whole word or as a prefix, best first
+     * @param type PROBLEM or CHALLENGE to search one kind only, null for both
+     * @param limit most hits to return; null for the default, capped at the maximum
+     * @throws ValidationException for an unknown type
+     */
+    public List<SearchHit> search(String query, String type, Integer limit) {
+        if (type != null && !PROBLEM.equals(type) && !CHALLENGE.equals(type)) {
+            throw new ValidationException("Unknown type: " + type + " (expected problem or challenge)");
+        }
+        int max = Math.min(limit == null ? defaultLimit : limit, maxLimit);
+        Set<String> words = new LinkedHashSet<>(terms(query));
+        if (words.isEmpty() || max <= 0) {
+            return List.of();
+        }
+
+        Map<String, Integer> scores = null;
+        for (String word : words) {
+            Map<String, Integer> matches = match(word);
+            if (scores == null) {
+                scores = matches;
+            } else {
+                // Keep documents that matched every word so far
+                Map<String, Integer> both = new HashMap<>();
+                Map<String, Integer> smaller = matches.size() < scores.size() ? matches : scores;
+                Map<String, Integer> larger = smaller == matches ? scores : matches;
+                smaller.forEach((key, score) -> {
+                    Integer other = larger.get(key);
+                    if (other != null) {
+                        both.put(key, score + other);
+                    }
+                });
+                scores = both;
+            }
+            if (scores.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        List<SearchHit> hits = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+            Document document = documents.get(entry.getKey());
+            if (document != null && (type == null || type.equals(document.type()))) {
+                hits.add(document.hit(entry.getValue()));
+            }
+        }
+        hits.sort(Comparator.comparingInt(SearchHit::getScore).reversed()
+                .thenComparing(SearchHit::getType)
+                .thenComparingLong(SearchHit::getId));
+        return hits.size() > max ? new ArrayList<>(hits.subList(0, max)) : hits;
+    }
+
+    private Map<String, Integer> match(String word) {
+        Map<String, Integer> matches = new HashMap<>();
+        Map<String, Integer> exact = postings.get(word);
+        if (exact != null) {
+            exact.forEach((key, weight) -> matches.merge(key, weight * EXACT_BONUS, Integer::sum));
+        }
+        int expanded = 0;
+        for (Map.Entry<String, Map<String, Integer>> term
+                : postings.subMap(word, false, word + Character.MAX_VALUE, false).entrySet()) {
+            if (++expanded > maxPrefixTerms) {
+                break;
+            }
+            term.getValue().forEach((key, weight) -> matches.merge(key, weight, Integer::sum));
+        }
+        return matches;
+    }
+
+    /**
+     * Lower-cased words; identifiers such as student_id also yield their parts
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        Matcher matcher = WORD.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find()) {
+            String word = matcher.group();
+            terms.add(word);
+            if (word.indexOf('_') >= 0) {
+                for (String part : word.split("_")) {
+                    if (!part.isEmpty()) {
+                        terms.add(part);
+                    }
+                }
+            }
+        }
+        return terms;
+    }
+
+    private record Document(String type, long id, String title, Integer stageId, Integer levelId,
+                            Integer stageNumber, String difficulty, String text) {
+
+        String key() {
+            return type + ":" + id;
+        }
+
+        SearchHit hit(int score) {
+            return SearchHit.builder()
+                    .type(type)
+                    .id(id)
+                    .title(title)
+                    .stageId(stageId)
+                    .levelId(levelId)
+                    .stageNumber(stageNumber)
+                    .difficulty(difficulty)
+                    .score(score)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.leetquery.backend.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Utility class that walks SQL input once and splits it into statements.
+ * For each statement it reports the kind, a normalized text and literal-free fingerprint,
+ * and the tables it references. Keywords are matched in place against the input, so the
+ * only copies made are the normalized texts and the names it collects.
+ */
+public final class SqlLexer {
+
+    private static final String[] KINDS = {
+            "SELECT", "INSERT", "UPDATE", "DELETE", "MERGE", "CREATE", "ALTER", "DROP", "TRUNCATE",
+            "SHOW", "DESCRIBE", "EXPLAIN", "COMMIT", "ROLLBACK", "SAVEPOINT", "GRANT", "REVOKE"
+    };
+
+    // Words that may open the main statement after a WITH clause
+    private static final String[] CTE_BODIES = {"SELECT", "INSERT", "UPDATE", "DELETE", "MERGE", "VALUES", "TABLE"};
+
+    // Words that end a FROM list at the depth it was opened
+    private static final String[] FROM_LIST_END = {
+            "WHERE", "GROUP", "ORDER", "HAVING", "LIMIT", "UNION", "EXCEPT", "INTERSECT", "MINUS", "OFFSET",
+            "FETCH", "WINDOW", "QUALIFY", "ON", "SET", "VALUES", "SELECT", "RETURNING", "FOR"
+    };
+
+    // Words that may sit between a table keyword and the table name
+    private static final String[] TABLE_MODIFIERS = {"IF", "NOT", "EXISTS", "ONLY", "LATERAL"};
+
+    // Words that open a data change delta table when followed by TABLE
+    private static final String[] DELTA_TABLES = {"OLD", "NEW", "FINAL"};
+
+    // Functions that may be called without parentheses
+    private static final String[] NILADIC_FUNCTIONS = {
+            "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP", "LOCALTIME", "LOCALTIMESTAMP",
+            "CURRENT_USER", "SESSION_USER", "SYSDATE", "SYSTIMESTAMP", "TODAY"
+    };
+
+    private final String sql;
+    private final int length;
+    private final List<SqlStatement> statements = new ArrayList<>();
+
+    private int pos;
+
+    // Per-statement state
+    private int statementStart;
+    private StringBuilder normalized;
+    private StringBuilder fingerprint;
+    private Set<String> tables;
+    private Set<String> functions;
+    private Set<String> cteNames;
+    private String kind;
+    private boolean hiddenWrite;
+    private boolean inWith;
+    private boolean pendingSpace;
+    private boolean lastWasWord;
+    private int wordCount;
+    private int depth;
+    private int fromDepth;
+    private boolean expectTable;
+    private String qualifier;
+
+    private SqlLexer(String sql) {
+        this.sql = sql;
+        this.length = sql.length();
+        resetStatement(0);
+    }
+
+    /**
+     * Splits the input into statements, skipping empty ones
+     */
+    public static List<SqlStatement> lex(String sql) {
+        SqlLexer lexer = new SqlLexer(sql);
+        lexer.run();
+        return lexer.statements;
+    }
+
+    /**
+     * The first statement of the input, or an UNKNOWN statement when the input has none
+     */
+    public static SqlStatement analyze(String sql) {
+        List<SqlStatement> statements = lex(sql);
+        if (statements.isEmpty()) {
+            return new SqlStatement("UNKNOWN", "", 0, 0, "", "", Set.of(), Set.of(), false);
+        }
+        return statements.get(0);
+    }
+
+    private void run() {
+        while (pos < length) {
+            char c = sql.charAt(pos);
+            char next = pos + 1 < length ? sql.charAt(pos + 1) : 0;
+
+            if (c == '-' && next == '-') {
+                while (pos < length && sql.charAt(pos) != '\n') {
+                    pos++;
+                }
+                pendingSpace = true;
+            } else if (c == '/' && next == '*') {
+                int close = sql.indexOf("*/", pos + 2);
+                pos = close < 0 ? length : close + 2;
+                pendingSpace = true;
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+                pendingSpace = true;
+            } else if (c == ';') {
+                finishStatement(pos);
+                pos++;
+                resetStatement(pos);
+            } else if (c == '\'') {
+                int end = quotedEnd(pos, '\'');
+                appendToken(sql.substring(pos, end), "?", true);
+                expectTable = false;
+                pos = end;
+            } else if (c == '$' && next == '$') {
+                // H2 dollar-quoted string: everything up to the closing $$ is literal text
+                int close = sql.indexOf("$$", pos + 2);
+                int end = close < 0 ? length : close + 2;
+                appendToken(sql.substring(pos, end), "?", true);
+                expectTable = false;
+                pos = end;
+            } else if (c == '"' || c == '`') {
+                int end = quotedEnd(pos, c);
+                String text = sql.substring(pos, end);
+                appendToken(text, text, true);
+                int nameEnd = end - 1 > pos && sql.charAt(end - 1) == c ? end - 1 : end;
+                identifier(sql.substring(pos + 1, nameEnd).toLowerCase(Locale.ROOT), end);
+                pos = end;
+            } else if (Character.isDigit(c) || (c == '.' && Character.isDigit(next))) {
+                int end = numberEnd(pos);
+                appendToken(sql.substring(pos, end), "?", true);
+                expectTable = false;
+                pos = end;
+            } else if (Character.isLetter(c) || c == '_' || c == '$') {
+                int end = pos + 1;
+                while (end < length && isWordPart(sql.charAt(end)) && !sql.startsWith("$$", end)) {
+                    end++;
+                }
+                word(pos, end);
+                pos = end;
+            } else {
+                punctuation(c);
+                pos++;
+            }
+        }
+        finishStatement(length);
+    }
+
+    private void word(int start, int end) {
+        appendWord(start, end);
+
+        if (kind == null) {
+            resolveKind(start, end);
+            if (kind == null && inWith && depth == 0 && !matches(start, end, "WITH")
+                    && !matches(start, end, "RECURSIVE") && !matches(start, end, "AS")) {
+                cteNames.add(lowerCase(start, end));
+            }
+        }
+
+        if (matchesAny(start, end, DELTA_TABLES) && nextWordIs(end, "TABLE")) {
+            // A data change delta table: the wrapped INSERT/UPDATE/DELETE/MERGE names the tables
+            hiddenWrite = true;
+            expectTable = false;
+            return;
+        }
+        if ("EXPLAIN".equals(kind) && wordCount == 2 && matches(start, end, "ANALYZE")) {
+            hiddenWrite = true;
+        }
+
+        if (expectTable) {
+            if (!matchesAny(start, end, TABLE_MODIFIERS)) {
+                identifier(lowerCase(start, end), end);
+            }
+            return;
+        }
+
+        if (matches(start, end, "FROM")) {
+            expectTable = true;
+            fromDepth = depth;
+        } else if (matches(start, end, "JOIN") || matches(start, end, "INTO") || matches(start, end, "UPDATE")
+                || matches(start, end, "TABLE") || matches(start, end, "USING")) {
+            expectTable = true;
+        } else if ("DESCRIBE".equals(kind) && wordCount == 1) {
+            expectTable = true;
+        } else if (depth == fromDepth && matchesAny(start, end, FROM_LIST_END)) {
+            fromDepth = -1;
+        } else if (nextNonSpace(end) == '(' || matchesAny(start, end, NILADIC_FUNCTIONS)) {
+            functions.add(lowerCase(start, end));
+        }
+    }
+
+    /**
+     * Records a name in table position, or remembers it as the qualifier of the next name
+     */
+    private void identifier(String name, int end) {
+        if (!expectTable) {
+            return;
+        }
+        if (end < length && sql.charAt(end) == '.') {
+            qualifier = name;
+            return;
+        }
+        if (qualifier != null && !"public".equals(qualifier)) {
+            tables.add(qualifier + "." + name);
+        } else {
+            tables.add(name);
+        }
+        qualifier = null;
+        expectTable = false;
+    }
+
+    private void punctuation(char c) {
+        separate(false);
+        normalized.append(c);
+        fingerprint.append(c);
+
+        switch (c) {
+            case '(':
+                depth++;
+                expectTable = false;
+                break;
+            case ')':
+                depth--;
+                expectTable = false;
+                if (fromDepth > depth) {
+                    fromDepth = -1;
+                }
+                break;
+            case ',':
+                expectTable = depth == fromDepth;
+                break;
+            case '.':
+                break;
+            default:
+                expectTable = false;
+        }
+    }
+
+    private void resolveKind(int start, int end) {
+        if (!inWith) {
+            if (matches(start, end, "WITH")) {
+                inWith = true;
+                return;
+            }
+            if (matches(start, end, "DESC")) {
+                kind = "DESCRIBE";
+                return;
+            }
+            if (matches(start, end, "VALUES") || matches(start, end, "TABLE")) {
+                kind = "SELECT";
+                return;
+            }
+            kind = "UNKNOWN";
+            for (String candidate : KINDS) {
+                if (matches(start, end, candidate)) {
+                    kind = candidate;
+                    break;
+                }
+            }
+            return;
+        }
+
+        // Inside WITH: the first top-level statement keyword after the CTE list decides
+        if (depth == 0 && matchesAny(start, end, CTE_BODIES)) {
+            kind = matches(start, end, "VALUES") || matches(start, end, "TABLE")
+                    ? "SELECT"
+                    : sql.substring(start, end).toUpperCase(Locale.ROOT);
+        }
+    }
+
+    private void appendToken(String normalizedText, String fingerprintText, boolean wordLike) {
+        separate(wordLike);
+        normalized.append(normalizedText);
+        fingerprint.append(fingerprintText);
+    }
+
+    private void appendWord(int start, int end) {
+        separate(true);
+        wordCount++;
+        for (int i = start; i < end; i++) {
+            char c = Character.toLowerCase(sql.charAt(i));
+            normalized.append(c);
+            fingerprint.append(c);
+        }
+    }
+
+    /**
+     * A space is only needed between two word-like tokens
+     */
+    private void separate(boolean wordLike) {
+        if (pendingSpace && wordLike && lastWasWord) {
+            normalized.append(' ');
+            fingerprint.append(' ');
+        }
+        pendingSpace = false;
+        lastWasWord = wordLike;
+    }
+
+    private String lowerCase(int start, int end) {
+        return sql.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private void finishStatement(int end) {
+        if (normalized.length() > 0) {
+            String text = sql.substring(statementStart, end).trim();
+            int start = sql.indexOf(text, statementStart);
+            tables.removeAll(cteNames);
+            statements.add(new SqlStatement(
+                    kind != null ? kind : "UNKNOWN",
+                    text,
+                    start,
+                    start + text.length(),
+                    normalized.toString(),
+                    fingerprint.toString(),
+                    Collections.unmodifiableSet(tables),
+                    Collections.unmodifiableSet(functions),
+                    hiddenWrite));
+        }
+    }
+
+    private void resetStatement(int start) {
+        statementStart = start;
+        normalized = new StringBuilder();
+        fingerprint = new StringBuilder();
+        tables = new HashSet<>();
+        functions = new HashSet<>();
+        cteNames = new HashSet<>();
+        kind = null;
+        hiddenWrite = false;
+        inWith = false;
+        pendingSpace = false;
+        lastWasWord = false;
+        wordCount = 0;
+        depth = 0;
+        fromDepth = -1;
+        expectTable = false;
+        qualifier = null;
+    }
+
+    /**
+     * End offset (exclusive) of a quoted literal or identifier; doubled quotes are escapes
+     */
+    private int quotedEnd(int start, char quote) {
+        int i = start + 1;
+        while (i < length) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    private int numberEnd(int start) {
+        int i = start;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isDigit(c) || c == '.') {
+                i++;
+            } else if ((c == 'e' || c == 'E') && i + 1 < length
+                    && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '+' || sql.charAt(i + 1) == '-')) {
+                i += 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private char nextNonSpace(int from) {
+        int i = from;
+        while (i < length && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        return i < length ? sql.charAt(i) : 0;
+    }
+
+    /**
+     * Whether the next word after from, past whitespace, is the keyword
+     */
+    private boolean nextWordIs(int from, String keyword) {
+        int i = from;
+        while (i < length && Character.isWhitespace(sql.charAt(i))) {
+            i++;
+        }
+        int end = i + keyword.length();
+        return sql.regionMatches(true, i, keyword, 0, keyword.length())
+                && (end >= length || !isWordPart(sql.charAt(end)));
+    }
+
+    private boolean matches(int start, int end, String keyword) {
+        return end - start == keyword.length() && sql.regionMatches(true, start, keyword, 0, keyword.length());
+    }
+
+    private boolean matchesAny(int start, int end, String[] keywords) {
+        for (String keyword : keywords) {
+            if (matches(start, end, keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,92 @@
+package com.leetquery.backend.util;
+
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * One statement of a SQL input as seen by SqlLexer
+ */
+@Getter
+public final class SqlStatement {
+
+    /**
+     * Statement kind: SELECT, INSERT, UPDATE, DELETE, MERGE, CREATE, ALTER, DROP, TRUNCATE,
+     * SHOW, DESCRIBE, EXPLAIN, COMMIT, ROLLBACK, SAVEPOINT, GRANT, REVOKE or UNKNOWN.
+     * CTEs and parenthesised selects report the kind of their main statement.
+     */
+    private final String kind;
+
+    /**
+     * Statement text without surrounding whitespace or the terminating semicolon
+     */
+    private final String sql;
+
+    /**
+     * Offsets of the statement within the original input, end exclusive
+     */
+    private final int start;
+    private final int end;
+
+    /**
+     * Comments removed, whitespace collapsed, lower case outside quotes; literals kept
+     */
+    private final String normalized;
+
+    /**
+     * Like normalized, with string and numeric literals replaced by '?'
+     */
+    private final String fingerprint;
+
+    /**
+     * Lower-case names of the tables the statement reads or writes. Names qualified with a
+     * schema other than PUBLIC keep their qualifier.
+     */
+    private final Set<String> tables;
+
+    /**
+     * Lower-case names of the functions the statement calls, including niladic ones like CURRENT_DATE
+     */
+    private final Set<String> functions;
+
+    /**
+     * Whether a statement of a reading kind changes data anyway: EXPLAIN ANALYZE runs the statement
+     * it explains, and OLD/NEW/FINAL TABLE (...) runs the data change it wraps
+     */
+    private final boolean hiddenWrite;
+
+    SqlStatement(String kind, String sql, int start, int end, String normalized, String fingerprint,
+                 Set<String> tables, Set<String> functions, boolean hiddenWrite) {
+        this.kind = kind;
+        this.sql = sql;
+        this.start = start;
+        this.end = end;
+        this.normalized = normalized;
+        this.fingerprint = fingerprint;
+        this.tables = tables;
+        this.functions = functions;
+        this.hiddenWrite = hiddenWrite;
+    }
+
+    /**
+     * Whether the statement produces a ResultSet
+     */
+    public boolean returnsResultSet() {
+        switch (kind) {
+            case "SELECT":
+            case "SHOW":
+            case "DESCRIBE":
+            case "EXPLAIN":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Whether the statement only reads: it produces a ResultSet and has no hidden write
+     */
+    public boolean isPlainRead() {
+        return returnsResultSet() && !hiddenWrite;
+    }
+}
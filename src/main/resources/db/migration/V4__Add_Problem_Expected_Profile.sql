@@ -0,0 +1,8 @@
+-- Profile of a problem's expected query, measured in a scratch sandbox when the problem is written:
+-- result row count, order-insensitive result fingerprint, column names and execution time
+
+ALTER TABLE problems
+ADD COLUMN IF NOT EXISTS expected_row_count INTEGER,
+ADD COLUMN IF NOT EXISTS expected_fingerprint VARCHAR(64),
+ADD COLUMN IF NOT EXISTS expected_columns VARCHAR(2000),
+ADD COLUMN IF NOT EXISTS expected_execution_ms BIGINT;
@@ -0,0 +1,10 @@
+-- Challenges each learner has solved, written behind by the progress store.
+-- user_progress.total_challenges_completed is the number of rows per user here.
+
+CREATE TABLE IF NOT EXISTS user_challenge_completions (
+    user_id BIGINT NOT NULL,
+    challenge_id BIGINT NOT NULL,
+    completed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (user_id, challenge_id),
+    CONSTRAINT fk_user_challenge_completions_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
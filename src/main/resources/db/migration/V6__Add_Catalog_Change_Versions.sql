@@ -0,0 +1,7 @@
+-- Per-row catalog change versions for delta sync (GET /catalog/changes).
+-- Admin write paths stamp rows with the next version; existing rows start at 0.
+-- tutorial_schema is not managed by Flyway; DatabaseInitializer adds its column.
+
+ALTER TABLE stages ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE problems ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE challenges ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- Refresh-token ids (jti) that may no longer be used: rotated on refresh or revoked on logout.
+-- Rows are written behind by the in-memory revocation set and purged once expires_at passes.
+
+CREATE TABLE IF NOT EXISTS revoked_refresh_tokens (
+    jti VARCHAR(64) NOT NULL PRIMARY KEY,
+    expires_at DATETIME NOT NULL,
+    revoked_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_revoked_refresh_tokens_expires_at ON revoked_refresh_tokens(expires_at);
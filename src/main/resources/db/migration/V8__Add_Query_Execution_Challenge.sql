@@ -0,0 +1,6 @@
+-- The challenge a recorded query answered, next to the practice problem it may have answered.
+-- No foreign key, so history is kept when a challenge is removed.
+
+ALTER TABLE query_executions ADD COLUMN IF NOT EXISTS challenge_id BIGINT;
+
+CREATE INDEX idx_query_executions_challenge_id ON query_executions(challenge_id);
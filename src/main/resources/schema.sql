@@ -164,7 +164,9 @@ CREATE TABLE IF NOT EXISTS stages (
     id INT PRIMARY KEY AUTO_INCREMENT,
     title VARCHAR(255) NOT NULL,
     description TEXT,
-    order_no INT NOT NULL
+    order_no INT NOT NULL,
+    -- Catalog change version of the last admin write, 0 for seed data; drives /catalog/changes
+    change_version BIGINT NOT NULL DEFAULT 0
 );
 
 -- ============================================
@@ -176,6 +178,12 @@ CREATE TABLE IF NOT EXISTS problems (
     title VARCHAR(255) NOT NULL,
     description TEXT,
     expected_query TEXT NOT NULL,
+    -- Profile of expected_query, measured in a scratch sandbox when the problem is written
+    expected_row_count INT,
+    expected_fingerprint VARCHAR(64),
+    expected_columns VARCHAR(2000),
+    expected_execution_ms BIGINT,
+    change_version BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (stage_id) REFERENCES stages(id)
 );
 
@@ -219,6 +227,7 @@ CREATE TABLE IF NOT EXISTS challenges (
     relational_algebra_hint TEXT,
     success_message TEXT NOT NULL,
     challenge_type VARCHAR(10) DEFAULT 'DQL',
+    change_version BIGINT NOT NULL DEFAULT 0,
     UNIQUE(level_id, stage_number, difficulty)
 );
 
@@ -228,7 +237,8 @@ CREATE TABLE IF NOT EXISTS challenges (
 CREATE TABLE IF NOT EXISTS tutorial_schema (
     id INT PRIMARY KEY AUTO_INCREMENT,
     level_id INT NOT NULL DEFAULT 0,
-    schema_info TEXT NOT NULL
+    schema_info TEXT NOT NULL,
+    change_version BIGINT NOT NULL DEFAULT 0
 );
 
 -- ============================================
@@ -0,0 +1,99 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.exception.ServiceBusyException;
+import com.leetquery.backend.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    @Test
+    void testSaturatedPoolRejectsImmediately() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("hash:" + rawPassword);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slow, 1, 1, 5000, registry)) {
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Boolean> queued = CompletableFuture.supplyAsync(() -> encoder.matches("b", "hash:b"));
+            while (registry.get("executor.queued").tag("name", "passwordHashing").gauge().value() < 1) {
+                Thread.sleep(5);
+            }
+
+            assertThrows(ServiceBusyException.class, () -> encoder.encode("c"));
+            assertEquals(1, registry.get("password.hashing.rejected").counter().count());
+
+            release.countDown();
+            assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testTimedOutHashKeepsItsThreadUntilDone() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slow = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                // Like BCrypt, ignores interrupts
+                while (true) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                        break;
+                    } catch (InterruptedException e) {
+                        // Keep hashing
+                    }
+                }
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("hash:" + rawPassword);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(slow, 1, 1, 100, registry)) {
+            assertThrows(ServiceBusyException.class, () -> encoder.encode("a"));
+            // The timed-out hash is still running
+            assertEquals(1, registry.get("executor.active").tag("name", "passwordHashing").gauge().value());
+
+            // A hash that times out while queued is dropped instead of running later
+            assertThrows(ServiceBusyException.class, () -> encoder.encode("b"));
+            assertEquals(0, registry.get("executor.queued").tag("name", "passwordHashing").gauge().value());
+            assertEquals(2, registry.get("password.hashing.rejected").counter().count());
+
+            release.countDown();
+            while (registry.get("executor.active").tag("name", "passwordHashing").gauge().value() > 0) {
+                Thread.sleep(5);
+            }
+            assertEquals("hash:c", encoder.encode("c"));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.ImportResponse;
+import com.leetquery.backend.service.BulkImportService;
+import com.leetquery.backend.service.CatalogService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BulkImportServiceTest {
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM problems WHERE title LIKE 'Bulk %'");
+        jdbcTemplate.update("DELETE FROM challenges WHERE level_id = 99");
+        catalogService.refresh();
+    }
+
+    @Test
+    void testJsonProblemsSkipInvalidRows() throws Exception {
+        int stageOrder = catalogService.snapshot().getStages().get(0).getOrderNo();
+        String json = "[" +
+                "{\"stageOrder\": " + stageOrder + ", \"title\": \"Bulk one\", \"expectedQuery\": \"SELECT 1\"}," +
+                "{\"stage_order\": 4242, \"title\": \"Bulk missing stage\", \"expected_query\": \"SELECT 2\"}," +
+                "42," +
+                "{\"stageOrder\": " + stageOrder + ", \"title\": \"Bulk two\", \"description\": \"d\", \"expectedQuery\": \"SELECT 3\"}" +
+                "]";
+
+        ImportResponse response = bulkImportService.importRows("problems", body(json), "application/json");
+
+        assertFalse(response.isSuccess());
+        assertEquals(4, response.getRowsRead());
+        assertEquals(2, response.getInserted());
+        assertEquals(2, response.getFailed());
+        assertEquals(2, response.getErrors().get(0).getRow());
+        assertTrue(response.getErrors().get(0).getError().contains("4242"));
+        assertEquals(3, response.getErrors().get(1).getRow());
+
+        // The catalog was rebuilt with the new rows
+        assertTrue(catalogService.snapshot().getStagesWithProblems().get(0).getProblems().stream()
+                .anyMatch(problem -> "Bulk two".equals(problem.getTitle())));
+    }
+
+    @Test
+    void testCsvChallengesReportConstraintViolationsPerRow() throws Exception {
+        String csv = "level_id,stage_number,stage_title,difficulty,description,expected_query,success_message\r\n" +
+                "99,1,\"Select, basics\",easy,\"Say \"\"hi\"\"\",SELECT 'hi',Done\r\n" +
+                "99,1,Duplicate,EASY,Same key as row 1,SELECT 1,Done\r\n" +
+                "\n" +
+                "99,2,\"Multi\nline\",HARD,desc,SELECT 2,Done\n" +
+                "99,3,Too few columns\n" +
+                "99,4,Bad difficulty,IMPOSSIBLE,desc,SELECT 4,Done\n";
+
+        ImportResponse response = bulkImportService.importRows("challenges", body(csv), "text/csv; charset=utf-8");
+
+        assertEquals(5, response.getRowsRead());
+        assertEquals(2, response.getInserted());
+        assertEquals(3, response.getFailed());
+        assertEquals(2, response.getErrors().get(0).getRow());
+        assertEquals(4, response.getErrors().get(1).getRow());
+        assertEquals(5, response.getErrors().get(2).getRow());
+
+        assertEquals("Select, basics", jdbcTemplate.queryForObject(
+                "SELECT stage_title FROM challenges WHERE level_id = 99 AND stage_number = 1", String.class));
+        assertEquals("Say \"hi\"", jdbcTemplate.queryForObject(
+                "SELECT description FROM challenges WHERE level_id = 99 AND stage_number = 1", String.class));
+        assertEquals("Multi\nline", jdbcTemplate.queryForObject(
+                "SELECT stage_title FROM challenges WHERE level_id = 99 AND stage_number = 2", String.class));
+        assertEquals(2, catalogService.snapshot().getChallenges(99).size());
+    }
+
+    @Test
+    void testMalformedUploadIsRejected() {
+        assertThrows(ValidationException.class,
+                () -> bulkImportService.importRows("problems", body("{\"title\": \"x\"}"), "application/json"));
+        assertThrows(ValidationException.class,
+                () -> bulkImportService.importRows("stages", body("[]"), "application/json"));
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
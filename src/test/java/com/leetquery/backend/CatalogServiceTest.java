@@ -0,0 +1,175 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.dto.StageResponse;
+import com.leetquery.backend.model.Stage;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.CatalogSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leetquery.backend.model.Challenge;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+class CatalogServiceTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testSnapshotMatchesDatabase() {
+        CatalogSnapshot catalog = catalogService.snapshot();
+
+        List<Integer> orderNos = jdbcTemplate.queryForList("SELECT order_no FROM stages ORDER BY order_no", Integer.class);
+        assertEquals(orderNos, catalog.getStages().stream().map(Stage::getOrderNo).toList());
+
+        for (Stage stage : catalog.getStages()) {
+            Integer problems = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM problems WHERE stage_id = ?", Integer.class, stage.getId());
+            assertEquals(problems, catalog.getProblemsByStage(stage.getId()).size());
+            assertSame(stage, catalog.getStageByOrderNo(stage.getOrderNo()));
+        }
+
+        Integer challenges = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM challenges WHERE level_id = 0", Integer.class);
+        assertEquals(challenges, catalog.getChallenges(0).size());
+        assertNotNull(catalog.getSchema(0));
+    }
+
+    @Test
+    void testRefreshSwapsInNewContent() {
+        CatalogSnapshot before = catalogService.snapshot();
+        Stage stage = before.getStages().get(0);
+
+        jdbcTemplate.update("INSERT INTO problems (stage_id, title, description, expected_query) VALUES (?, ?, ?, ?)",
+                stage.getId(), "Catalog test", "Added by the test", "SELECT 1");
+        try {
+            // Readers keep the old snapshot until the rebuild is swapped in
+            assertSame(before, catalogService.snapshot());
+            CatalogSnapshot after = catalogService.refresh();
+
+            assertSame(after, catalogService.snapshot());
+            assertEquals(before.getProblemsByStage(stage.getId()).size() + 1, after.getProblemsByStage(stage.getId()).size());
+            StageResponse first = after.getStagesWithProblems().get(0);
+            assertEquals("Catalog test", first.getProblems().get(first.getProblems().size() - 1).getTitle());
+        } finally {
+            jdbcTemplate.update("DELETE FROM problems WHERE title = 'Catalog test'");
+            catalogService.refresh();
+        }
+    }
+
+    @Test
+    void testConditionalGetUntilContentChanges() throws Exception {
+        // Controllers only; authentication is not under test here
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+
+        MvcResult first = mockMvc.perform(get("/api/stages").contextPath("/api"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"))
+                .andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/stages").contextPath("/api").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        catalogService.refresh();
+        mockMvc.perform(get("/api/stages").contextPath("/api").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGzipVariantMatchesIdentityPayload() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+
+        MvcResult identity = mockMvc.perform(get("/api/levels/0/challenges").contextPath("/api"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn();
+        MvcResult gzip = mockMvc.perform(get("/api/levels/0/challenges").contextPath("/api")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        assertTrue(gzip.getResponse().getHeaders(HttpHeaders.VARY).contains(HttpHeaders.ACCEPT_ENCODING));
+
+        byte[] unzipped;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getResponse().getContentAsByteArray()))) {
+            unzipped = in.readAllBytes();
+        }
+        assertArrayEquals(identity.getResponse().getContentAsByteArray(), unzipped);
+
+        String gzipTag = gzip.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(identity.getResponse().getHeader(HttpHeaders.ETAG), gzipTag);
+        mockMvc.perform(get("/api/levels/0/challenges").contextPath("/api")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.IF_NONE_MATCH, gzipTag))
+                .andExpect(status().isNotModified());
+
+        // gzip;q=0 refuses the coding even though * allows it
+        mockMvc.perform(get("/api/levels/0/challenges").contextPath("/api").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, *"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void testKeysetPagesWithProjection() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        List<Long> expected = catalogService.snapshot().getChallenges(0).stream().map(Challenge::getId).toList();
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = get("/api/levels/0/challenges").contextPath("/api")
+                    .param("limit", "7").param("fields", "stageTitle,id");
+            if (cursor != null) {
+                request.param("after", cursor);
+            }
+            MvcResult page = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("X-Total-Count", String.valueOf(expected.size())))
+                    .andReturn();
+            JsonNode rows = objectMapper.readTree(page.getResponse().getContentAsByteArray());
+            assertTrue(rows.size() <= 7);
+            for (JsonNode row : rows) {
+                // Only the selected fields, in declaration order
+                List<String> names = new ArrayList<>();
+                row.fieldNames().forEachRemaining(names::add);
+                assertEquals(List.of("id", "stageTitle"), names);
+                seen.add(row.get("id").asLong());
+            }
+            cursor = page.getResponse().getHeader("X-Next-Cursor");
+        } while (cursor != null);
+        assertEquals(expected, seen);
+
+        mockMvc.perform(get("/api/levels/0/challenges").contextPath("/api").param("fields", "id,password"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/levels/0/challenges").contextPath("/api").param("after", "x"))
+                .andExpect(status().isBadRequest());
+    }
+}
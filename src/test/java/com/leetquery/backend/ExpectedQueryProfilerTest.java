@@ -0,0 +1,53 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.QueryProfile;
+import com.leetquery.backend.service.ExpectedQueryProfiler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ExpectedQueryProfilerTest {
+
+    @Autowired
+    private ExpectedQueryProfiler expectedQueryProfiler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testProfileDescribesResult() {
+        Integer departments = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM departments", Integer.class);
+
+        QueryProfile profile = expectedQueryProfiler.profile("SELECT * FROM departments");
+        assertEquals(departments, profile.getRowCount());
+        assertNotNull(profile.getFingerprint());
+        assertNotNull(profile.getExecutionMs());
+        assertTrue(profile.getColumns().contains(","));
+
+        // Same rows in another order, same fingerprint
+        QueryProfile reversed = expectedQueryProfiler.profile("SELECT * FROM departments ORDER BY 1 DESC");
+        assertEquals(profile.getFingerprint(), reversed.getFingerprint());
+    }
+
+    @Test
+    void testBrokenAndSlowQueriesAreRejected() {
+        assertThrows(ValidationException.class, () -> expectedQueryProfiler.profile("SELECT * FROM no_such_table"));
+        assertThrows(ValidationException.class, () -> expectedQueryProfiler.profile("  "));
+
+        Object budget = ReflectionTestUtils.getField(expectedQueryProfiler, "maxMillis");
+        ReflectionTestUtils.setField(expectedQueryProfiler, "maxMillis", 0L);
+        try {
+            ValidationException e = assertThrows(ValidationException.class,
+                    () -> expectedQueryProfiler.profile("SELECT SUM(X * X) FROM SYSTEM_RANGE(1, 2000000)"));
+            assertTrue(e.getMessage().contains("latency budget"));
+        } finally {
+            ReflectionTestUtils.setField(expectedQueryProfiler, "maxMillis", budget);
+        }
+    }
+}
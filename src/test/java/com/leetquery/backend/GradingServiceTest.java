@@ -0,0 +1,125 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.config.QueryBudgetProperties;
+import com.leetquery.backend.model.GradeResponse;
+import com.leetquery.backend.model.QueryBudget;
+import com.leetquery.backend.model.QueryContext;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.GradingService;
+import com.leetquery.backend.service.QueryExecutionService;
+import com.leetquery.backend.service.SandboxManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class GradingServiceTest {
+
+    @Autowired
+    private GradingService gradingService;
+
+    @Autowired
+    private QueryExecutionService queryExecutionService;
+
+    @Autowired
+    private SandboxManager sandboxManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private QueryBudgetProperties budgetProperties;
+
+    @Test
+    void testGradeSelectChallengeIgnoresRowOrder() throws Exception {
+        Long challengeId = jdbcTemplate.queryForObject(
+                "SELECT id FROM challenges WHERE expected_query = 'SELECT * FROM Student'", Long.class);
+        QueryContext context = QueryContext.builder().owner("grader-test").challengeId(challengeId).build();
+
+        // Play the level up to this challenge the way a learner would
+        List<String> earlier = jdbcTemplate.queryForList(
+                "SELECT expected_query FROM challenges WHERE level_id = 0 AND stage_number < 3 ORDER BY stage_number, id",
+                String.class);
+        for (String query : earlier) {
+            try {
+                queryExecutionService.executeQuery(query, context);
+            } catch (Exception ignored) {
+                // Same tolerance as the grader's replay
+            }
+        }
+
+        GradeResponse correct = gradingService.grade("SELECT * FROM Student ORDER BY name DESC", context);
+        assertTrue(correct.isCorrect(), correct.getMessage());
+        assertTrue(correct.isGraded());
+        assertNotNull(correct.getResult());
+
+        GradeResponse wrong = gradingService.grade("SELECT name FROM Student", context);
+        assertFalse(wrong.isCorrect());
+        assertTrue(wrong.isGraded());
+
+        // A truncated result says nothing about the full one
+        GradeResponse truncated = gradingService.grade("SELECT * FROM SYSTEM_RANGE(1, 5000)", context);
+        assertNotNull(truncated.getResult().getLimitHit());
+        assertFalse(truncated.isGraded());
+        assertFalse(truncated.isCorrect());
+
+        queryExecutionService.resetSandbox("grader-test");
+    }
+
+    @Test
+    void testSelectIsNotGradedWithoutAnExpectedResult() {
+        Long challengeId = jdbcTemplate.queryForObject(
+                "SELECT id FROM challenges WHERE expected_query = 'SELECT * FROM Student'", Long.class);
+        QueryContext context = QueryContext.builder().challengeId(challengeId).build();
+
+        // Without sandboxes the expected result cannot be computed
+        ReflectionTestUtils.setField(sandboxManager, "enabled", false);
+        gradingService.invalidate(challengeId);
+        try {
+            GradeResponse response = gradingService.grade("SELECT 1", context);
+            assertFalse(response.isGraded());
+            assertFalse(response.isCorrect());
+        } finally {
+            ReflectionTestUtils.setField(sandboxManager, "enabled", true);
+            gradingService.invalidate(challengeId);
+        }
+    }
+
+    @Test
+    void testTruncatedExpectedResultIsNotGraded() throws Exception {
+        jdbcTemplate.update("INSERT INTO challenges (level_id, stage_number, stage_title, difficulty, description, "
+                + "expected_query, success_message) VALUES (98, 1, 'Truncated', 'EASY', 'd', 'SELECT id FROM students', 'ok')");
+        catalogService.refresh();
+        Long challengeId = jdbcTemplate.queryForObject("SELECT id FROM challenges WHERE level_id = 98", Long.class);
+        QueryContext context = QueryContext.builder().owner("grader-truncated").challengeId(challengeId).build();
+
+        // Expected queries run under the content tier; two rows cannot hold the whole students table
+        QueryBudget content = budgetProperties.getTiers().put("content", QueryBudget.builder().maxRows(2).build());
+        try {
+            GradeResponse response = gradingService.grade("SELECT id FROM students", context);
+            assertTrue(response.getResult().isSuccess());
+            assertNull(response.getResult().getLimitHit());
+            assertFalse(response.isGraded());
+            assertFalse(response.isCorrect());
+        } finally {
+            if (content != null) {
+                budgetProperties.getTiers().put("content", content);
+            } else {
+                budgetProperties.getTiers().remove("content");
+            }
+            jdbcTemplate.update("DELETE FROM challenges WHERE level_id = 98");
+            catalogService.refresh();
+            gradingService.invalidate(challengeId);
+            queryExecutionService.resetSandbox("grader-truncated");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class JwtTokenProviderTest {
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Test
+    void testVerifiedTokensAreRemembered() {
+        String token = tokenProvider.generateTokenFromUsername("token_user");
+
+        Claims first = tokenProvider.verify(token);
+        assertNotNull(first);
+        assertEquals("token_user", first.getSubject());
+        assertSame(first, tokenProvider.verify(token));
+        assertEquals("token_user", tokenProvider.getUsernameFromJWT(token));
+        assertFalse(tokenProvider.validateRefreshToken(token));
+
+        String refresh = tokenProvider.generateRefreshToken("token_user");
+        assertTrue(tokenProvider.validateRefreshToken(refresh));
+    }
+
+    @Test
+    void testTamperedTokensAreRejected() {
+        String token = tokenProvider.generateTokenFromUsername("token_user");
+        assertNotNull(tokenProvider.verify(token));
+
+        int dot = token.lastIndexOf('.');
+        char last = token.charAt(dot + 1);
+        String forged = token.substring(0, dot + 1) + (last == 'A' ? 'B' : 'A') + token.substring(dot + 2);
+        assertNull(tokenProvider.verify(forged));
+        assertFalse(tokenProvider.validateToken(forged));
+        assertNull(tokenProvider.verify(""));
+    }
+}
@@ -0,0 +1,93 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.exception.ValidationException;
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.LeaderboardEntry;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.Leaderboard;
+import com.leetquery.backend.service.ProgressService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class LeaderboardTest {
+
+    private static final long FIRST = 9_101L;
+    private static final long SECOND = 9_102L;
+    private static final long THIRD = 9_103L;
+
+    @Autowired
+    private Leaderboard leaderboard;
+
+    @Autowired
+    private ProgressService progressService;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @AfterEach
+    void cleanUp() {
+        for (long userId : List.of(FIRST, SECOND, THIRD)) {
+            progressService.reset(userId);
+        }
+        progressService.flush();
+    }
+
+    @Test
+    void testRanksFollowCompletions() throws Exception {
+        List<Challenge> challenges = catalogService.snapshot().getChallenges(0);
+        Challenge one = challenges.get(0);
+        Challenge two = challenges.get(1);
+
+        progressService.recordSubmission(FIRST, "first", one.getId(), true, 1);
+        progressService.recordSubmission(THIRD, "third", one.getId(), true, 1);
+        Thread.sleep(5);
+        progressService.recordSubmission(FIRST, "first", two.getId(), true, 1);
+        Thread.sleep(5);
+        progressService.recordSubmission(SECOND, "second", one.getId(), true, 1);
+        progressService.recordSubmission(SECOND, "second", two.getId(), true, 1);
+        // Wrong answers and repeats do not move anyone
+        progressService.recordSubmission(THIRD, "third", two.getId(), false, 1);
+        progressService.recordSubmission(THIRD, "third", one.getId(), true, 1);
+
+        LeaderboardEntry first = leaderboard.rankOf(FIRST, null, null);
+        LeaderboardEntry second = leaderboard.rankOf(SECOND, null, null);
+        LeaderboardEntry third = leaderboard.rankOf(THIRD, null, null);
+        assertEquals(2, first.getChallengesCompleted());
+        assertEquals("first", first.getUsername());
+        assertEquals(1, third.getChallengesCompleted());
+        // Equal scores go to whoever reached them first
+        assertTrue(first.getRank() < second.getRank());
+        assertTrue(second.getRank() < third.getRank());
+
+        List<LeaderboardEntry> top = leaderboard.top(null, null, 100);
+        for (int i = 0; i < top.size(); i++) {
+            assertEquals(i + 1, top.get(i).getRank());
+            if (i > 0) {
+                assertTrue(top.get(i - 1).getChallengesCompleted() >= top.get(i).getChallengesCompleted());
+            }
+        }
+        assertEquals(FIRST, top.get(first.getRank() - 1).getUserId());
+        assertEquals(THIRD, top.get(third.getRank() - 1).getUserId());
+
+        LeaderboardEntry stage = leaderboard.rankOf(THIRD, 0, one.getStageNumber());
+        assertNotNull(stage);
+        assertEquals(1, stage.getChallengesCompleted());
+
+        progressService.reset(FIRST);
+        assertNull(leaderboard.rankOf(FIRST, null, null));
+        assertEquals(first.getRank(), leaderboard.rankOf(SECOND, null, null).getRank());
+    }
+
+    @Test
+    void testStageNeedsLevel() {
+        assertThrows(ValidationException.class, () -> leaderboard.top(null, 1, 10));
+        assertEquals(List.of(), leaderboard.top(4242, 1, 10));
+    }
+}
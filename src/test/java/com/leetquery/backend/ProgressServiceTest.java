@@ -0,0 +1,115 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.model.ProgressResponse;
+import com.leetquery.backend.service.ProgressService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ProgressServiceTest {
+
+    private static final long USER_ID = 9_001L;
+    private static final long DELETED_USER_ID = 9_002L;
+
+    @Autowired
+    private ProgressService progressService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        progressService.reset(USER_ID);
+        progressService.flush();
+        jdbcTemplate.update("DELETE FROM user_challenge_completions WHERE user_id = ?", DELETED_USER_ID);
+        jdbcTemplate.update("DELETE FROM user_progress WHERE user_id = ?", DELETED_USER_ID);
+    }
+
+    @Test
+    void testSubmissionsAreWrittenOnFlushOnly() {
+        progressService.recordSubmission(USER_ID, "learner", 2, true, 5);
+        progressService.recordSubmission(USER_ID, "learner", 1, false, 7);
+        progressService.recordSubmission(USER_ID, "learner", 1, true, 3);
+        progressService.recordSubmission(USER_ID, "learner", 2, true, 4);
+
+        ProgressResponse progress = progressService.getProgress(USER_ID);
+        assertEquals(2, progress.getChallengesCompleted());
+        assertEquals(List.of(1L, 2L), progress.getCompletedChallengeIds());
+        assertEquals(19, progress.getTotalExecutionTimeMs());
+        assertNotNull(progress.getLastActivityAt());
+        assertEquals(0, countCompletions());
+
+        progressService.flush();
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT total_challenges_completed, total_execution_time_ms FROM user_progress WHERE user_id = ?", USER_ID);
+        assertEquals(2, ((Number) row.get("total_challenges_completed")).intValue());
+        assertEquals(19L, ((Number) row.get("total_execution_time_ms")).longValue());
+        assertEquals(2, countCompletions());
+
+        // The second flush updates the existing row instead of inserting another
+        progressService.recordSubmission(USER_ID, "learner", 3, true, 1);
+        progressService.flush();
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_progress WHERE user_id = ?", Integer.class, USER_ID));
+        assertEquals(3, countCompletions());
+    }
+
+    @Test
+    void testResetClearsStoredCompletions() {
+        progressService.recordSubmission(USER_ID, "learner", 1, true, 2);
+        progressService.flush();
+        assertEquals(1, countCompletions());
+
+        progressService.reset(USER_ID);
+        progressService.recordSubmission(USER_ID, "learner", 4, true, 2);
+        assertEquals(List.of(4L), progressService.getProgress(USER_ID).getCompletedChallengeIds());
+
+        progressService.flush();
+        assertEquals(List.of(4L), jdbcTemplate.queryForList(
+                "SELECT challenge_id FROM user_challenge_completions WHERE user_id = ?", Long.class, USER_ID));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT total_challenges_completed FROM user_progress WHERE user_id = ?", Integer.class, USER_ID));
+    }
+
+    @Test
+    void testMissingProgressRowIsInsertedAgain() {
+        progressService.recordSubmission(USER_ID, "learner", 1, true, 2);
+        progressService.flush();
+        jdbcTemplate.update("DELETE FROM user_progress WHERE user_id = ?", USER_ID);
+
+        progressService.recordSubmission(USER_ID, "learner", 2, true, 3);
+        progressService.flush();
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT total_challenges_completed FROM user_progress WHERE user_id = ?", Integer.class, USER_ID));
+    }
+
+    @Test
+    void testFailingUserDoesNotHoldBackTheBatch() {
+        // Stored behind the service's back, so writing the same completion again fails
+        jdbcTemplate.update("INSERT INTO user_challenge_completions (user_id, challenge_id) VALUES (?, ?)",
+                DELETED_USER_ID, 7);
+        progressService.recordSubmission(DELETED_USER_ID, "gone", 7, true, 1);
+        progressService.recordSubmission(USER_ID, "learner", 1, true, 2);
+
+        progressService.flush();
+        assertEquals(1, countCompletions());
+        // No such user, so the failing entry is dropped instead of retried forever
+        assertNull(progressService.getCompletions(DELETED_USER_ID));
+        progressService.flush();
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_progress WHERE user_id = ?", Integer.class, DELETED_USER_ID));
+    }
+
+    private int countCompletions() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM user_challenge_completions WHERE user_id = ?", Integer.class, USER_ID);
+    }
+}
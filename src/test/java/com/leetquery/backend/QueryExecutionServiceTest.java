@@ -1,12 +1,37 @@
 package com.leetquery.backend;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leetquery.backend.exception.SandboxUnavailableException;
+import com.leetquery.backend.model.QueryContext;
 import com.leetquery.backend.model.QueryResponse;
+import com.leetquery.backend.model.ScriptResponse;
+import com.leetquery.backend.service.QueryAdmission;
 import com.leetquery.backend.service.QueryExecutionService;
+import com.leetquery.backend.service.QueryHistoryWriter;
+import com.leetquery.backend.service.QueryResultCache;
+import com.leetquery.backend.service.SandboxManager;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 class QueryExecutionServiceTest {
@@ -14,6 +39,24 @@ class QueryExecutionServiceTest {
     @Autowired
     private QueryExecutionService queryExecutionService;
 
+    @Autowired
+    private QueryResultCache resultCache;
+
+    @Autowired
+    private QueryHistoryWriter queryHistoryWriter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private QueryAdmission queryAdmission;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
     @Test
     void testSelectQuery() throws Exception {
         String query = "SELECT * FROM students LIMIT 5;";
@@ -46,4 +89,307 @@ class QueryExecutionServiceTest {
         assertEquals("INSERT", response.getQueryType());
         assertEquals(1, response.getRowCount());
     }
+
+    @Test
+    void testStreamSelectQuery() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        queryExecutionService.streamQuery("SELECT id, name FROM departments ORDER BY id", QueryContext.shared(), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(7, lines.length); // header + 5 rows + summary
+        assertTrue(lines[0].contains("\"type\":\"header\""));
+        assertTrue(lines[1].startsWith("[\"1\""));
+        assertTrue(lines[6].contains("\"rowCount\":5"));
+    }
+
+    @Test
+    void testSeveralStatementsAreRefused() throws Exception {
+        Integer students = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM students", Integer.class);
+
+        QueryResponse response = queryExecutionService.executeQuery("SELECT COUNT(*) FROM students; DELETE FROM students");
+        assertFalse(response.isSuccess());
+        assertTrue(response.getMessage().contains("/executeScript"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        queryExecutionService.streamQuery("SELECT id FROM students; DELETE FROM students", QueryContext.shared(), out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].contains("\"type\":\"error\""));
+
+        assertEquals(students, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM students", Integer.class));
+        // A semicolon inside a dollar-quoted string does not start another statement
+        assertTrue(queryExecutionService.executeQuery("SELECT $$a; b$$").isSuccess());
+    }
+
+    @Test
+    void testStreamRecordsHistoryAndReportsStoppedStatements() throws Exception {
+        QueryContext context = QueryContext.builder().owner("stream-test").userId(4343L).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        queryExecutionService.streamQuery("SELECT id FROM departments", context, out);
+
+        // A rejected statement has no headers or rows, only an error line
+        Object rejectRows = ReflectionTestUtils.getField(queryAdmission, "rejectRows");
+        ReflectionTestUtils.setField(queryAdmission, "rejectRows", 0L);
+        try {
+            out.reset();
+            queryExecutionService.streamQuery("UPDATE departments SET name = name WHERE id > 2", context, out);
+        } finally {
+            ReflectionTestUtils.setField(queryAdmission, "rejectRows", rejectRows);
+        }
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].contains("\"type\":\"error\""));
+
+        queryHistoryWriter.flushAll();
+        assertEquals(5, jdbcTemplate.queryForObject(
+                "SELECT result_rows FROM query_executions WHERE user_id = 4343 AND status = 'SUCCESS'", Integer.class));
+        queryExecutionService.resetSandbox("stream-test");
+    }
+
+    @Test
+    void testStreamWithoutASandboxIsRefused() throws Exception {
+        SandboxManager sandboxManager = (SandboxManager) ReflectionTestUtils.getField(queryExecutionService, "sandboxManager");
+        SandboxManager exhausted = Mockito.mock(SandboxManager.class);
+        Mockito.when(exhausted.isEnabled()).thenReturn(true);
+        Mockito.when(exhausted.acquire(Mockito.anyString()))
+                .thenThrow(new SandboxUnavailableException("All query sandboxes are in use. Please try again shortly."));
+        ReflectionTestUtils.setField(queryExecutionService, "sandboxManager", exhausted);
+        try {
+            // Nothing is written, so the endpoint can still answer with a status
+            QueryContext context = QueryContext.builder().owner("stream-busy").userId(4444L).build();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertThrows(SandboxUnavailableException.class,
+                    () -> queryExecutionService.streamQuery("SELECT id FROM departments", context, out));
+            assertEquals(0, out.size());
+
+            MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+            mockMvc.perform(post("/api/executeQuery/stream").contextPath("/api").principal(() -> "stream-busy")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"userQuery\":\"SELECT id FROM departments\"}"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(jsonPath("$.success").value(false));
+        } finally {
+            ReflectionTestUtils.setField(queryExecutionService, "sandboxManager", sandboxManager);
+        }
+
+        queryHistoryWriter.flushAll();
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM query_executions WHERE user_id = 4444 AND status = 'ERROR'", Integer.class));
+    }
+
+    @Test
+    void testSandboxesAreIsolated() throws Exception {
+        QueryContext alice = QueryContext.builder().owner("sandbox-alice").build();
+        QueryContext bob = QueryContext.builder().owner("sandbox-bob").build();
+
+        queryExecutionService.executeQuery("DELETE FROM enrollments", alice);
+        assertEquals(0, queryExecutionService.executeQuery("SELECT * FROM enrollments", alice).getRowCount());
+        assertEquals(20, queryExecutionService.executeQuery("SELECT * FROM enrollments", bob).getRowCount());
+        assertEquals(20, queryExecutionService.executeQuery("SELECT * FROM enrollments").getRowCount());
+
+        queryExecutionService.resetSandbox("sandbox-alice");
+        assertEquals(20, queryExecutionService.executeQuery("SELECT * FROM enrollments", alice).getRowCount());
+    }
+
+    @Test
+    void testQueryBudgetLimits() throws Exception {
+        QueryContext context = QueryContext.builder().tier("test").build();
+
+        QueryResponse truncated = queryExecutionService.executeQuery("SELECT * FROM students", context);
+        assertTrue(truncated.isSuccess());
+        assertEquals(3, truncated.getRowCount());
+        assertEquals("ROW_LIMIT", truncated.getLimitHit());
+
+        QueryResponse timedOut = queryExecutionService.executeQuery(
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b WHERE a.X + b.X = 3",
+                context);
+        assertFalse(timedOut.isSuccess());
+        assertEquals("TIMEOUT", timedOut.getLimitHit());
+    }
+
+    @Test
+    void testResultCacheSharedAcrossPristineSandboxes() throws Exception {
+        String query = "SELECT name, gpa FROM students WHERE gpa > 3.0";
+        QueryContext carol = QueryContext.builder().owner("carol").build();
+        QueryContext dave = QueryContext.builder().owner("dave").build();
+
+        QueryResponse first = queryExecutionService.executeQuery(query, carol);
+        long hits = resultCache.getHitCount();
+        QueryResponse second = queryExecutionService.executeQuery("select  name, gpa from students where gpa > 3.0;", dave);
+        assertEquals(hits + 1, resultCache.getHitCount());
+        assertEquals(first.getRows(), second.getRows());
+
+        // A write in carol's sandbox only affects carol's results
+        queryExecutionService.executeQuery(
+                "INSERT INTO students (name, department_id, gpa, enrollment_year) VALUES ('Cache Test', 1, 3.9, 2024)", carol);
+        assertEquals(first.getRowCount() + 1, queryExecutionService.executeQuery(query, carol).getRowCount());
+        assertEquals(first.getRowCount(), queryExecutionService.executeQuery(query, dave).getRowCount());
+
+        queryExecutionService.resetSandbox("carol");
+        queryExecutionService.resetSandbox("dave");
+    }
+
+    @Test
+    void testHiddenWritesDoNotPoisonTheSharedCache() throws Exception {
+        QueryContext victim = QueryContext.builder().owner("victim").build();
+        String[] writes = {
+                "EXPLAIN ANALYZE UPDATE students SET gpa = 0.01 WHERE id = 1",
+                "SELECT * FROM OLD TABLE (UPDATE students SET gpa = 0.02 WHERE id = 1)",
+                "SELECT COUNT(*) FROM students; UPDATE students SET gpa = 0.03 WHERE id = 1"
+        };
+        for (int i = 0; i < writes.length; i++) {
+            String owner = "mallory-" + i;
+            QueryContext mallory = QueryContext.builder().owner(owner).build();
+            String probe = "SELECT COUNT(*) FROM students WHERE gpa = 0.0" + (i + 1);
+
+            queryExecutionService.executeQuery(writes[i], mallory);
+            String seen = queryExecutionService.executeQuery(probe, mallory).getRows().get(0).get(0);
+            // The multi-statement form is refused, so its UPDATE never runs
+            assertEquals(i < 2 ? "1" : "0", seen);
+            // A pristine sandbox must not be served the result of the mallory sandbox's write
+            assertEquals("0", queryExecutionService.executeQuery(probe, victim).getRows().get(0).get(0));
+            queryExecutionService.resetSandbox(owner);
+        }
+        queryExecutionService.resetSandbox("victim");
+    }
+
+    @Test
+    void testExecutionHistoryWrittenInBatches() throws Exception {
+        QueryContext context = QueryContext.builder().userId(4242L).build();
+
+        queryExecutionService.executeQuery("SELECT * FROM students", context);
+        assertThrows(Exception.class, () -> queryExecutionService.executeQuery("SELECT * FROM no_such_table", context));
+        queryExecutionService.executeQuery("SELECT * FROM students");
+        queryHistoryWriter.flushAll();
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM query_executions WHERE user_id = 4242 AND status = 'SUCCESS'", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM query_executions WHERE user_id = 4242 AND status = 'ERROR'", Integer.class));
+    }
+
+    @Test
+    void testColumnarFormat() throws Exception {
+        QueryContext context = QueryContext.builder().columnar(true).build();
+        QueryResponse response = queryExecutionService.executeQuery(
+                "SELECT id, name, gpa, CAST(NULL AS INT) AS missing FROM students ORDER BY id LIMIT 3", context);
+
+        assertTrue(response.isSuccess());
+        assertEquals(3, response.getRowCount());
+        assertNull(response.getRows());
+
+        JsonNode columns = objectMapper.valueToTree(response).get("columnar").get("columns");
+        assertEquals("id", columns.get(0).get("name").asText().toLowerCase());
+        assertEquals("INTEGER", columns.get(0).get("type").asText());
+        assertTrue(columns.get(0).get("values").get(0).isNumber());
+        assertTrue(columns.get(1).get("values").get(0).isTextual());
+        assertTrue(columns.get(2).get("values").get(0).isNumber());
+        assertFalse(columns.get(0).has("nulls"));
+        // Bits 0-2 set: every row is NULL
+        assertEquals("Bw==", columns.get(3).get("nulls").asText());
+    }
+
+    @Test
+    void testHistoryKeepsProblemAndStopReason() throws Exception {
+        Long problemId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM problems", Long.class);
+        Long challengeId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM challenges", Long.class);
+        QueryContext context = QueryContext.builder().userId(4344L).problemId(problemId).challengeId(challengeId).build();
+        QueryResponse response = queryExecutionService.executeQuery(
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b, SYSTEM_RANGE(1, 100000) c",
+                context);
+        // Ids the catalog does not know are not written, since problem_id is a foreign key
+        queryExecutionService.executeQuery("SELECT 1", QueryContext.builder().userId(4345L).problemId(999_999L).build());
+
+        queryHistoryWriter.flushAll();
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT problem_id, challenge_id, status, error_message FROM query_executions WHERE user_id = 4344");
+        assertEquals(problemId, ((Number) row.get("problem_id")).longValue());
+        assertEquals(challengeId, ((Number) row.get("challenge_id")).longValue());
+        assertEquals("REJECTED", row.get("status"));
+        assertEquals(response.getMessage(), row.get("error_message"));
+        assertNull(jdbcTemplate.queryForObject(
+                "SELECT problem_id FROM query_executions WHERE user_id = 4345", Long.class));
+    }
+
+    @Test
+    void testScriptRunsInOneTransaction() throws Exception {
+        QueryContext erin = QueryContext.builder().owner("erin").build();
+
+        ScriptResponse created = queryExecutionService.executeScript("""
+                CREATE TABLE Pet (id INT PRIMARY KEY, name VARCHAR(20));
+                INSERT INTO Pet VALUES (1, 'Rex; the dog');
+                INSERT INTO Pet VALUES (2, 'Tom');
+                UPDATE Pet SET name = 'Tom''s cat' WHERE id = 2;
+                SELECT name FROM Pet ORDER BY id
+                """, erin);
+        assertTrue(created.isSuccess());
+        assertEquals(5, created.getResults().size());
+        assertEquals(1, created.getResults().get(1).getRowCount());
+        assertEquals(List.of(List.of("Rex; the dog"), List.of("Tom's cat")), created.getResults().get(4).getRows());
+
+        // The failing insert rolls back the update and insert before it
+        ScriptResponse failed = queryExecutionService.executeScript(
+                "UPDATE Pet SET name = 'Max'; INSERT INTO Pet VALUES (3, 'Kit'); INSERT INTO Pet VALUES (1, 'Dup'); SELECT 1",
+                erin);
+        assertFalse(failed.isSuccess());
+        assertEquals(3, failed.getResults().size());
+        assertFalse(failed.getResults().get(2).isSuccess());
+        assertEquals(List.of(List.of("2")), queryExecutionService.executeQuery(
+                "SELECT COUNT(*) FROM Pet WHERE name <> 'Max'", erin).getRows());
+
+        queryExecutionService.resetSandbox("erin");
+    }
+
+    @Test
+    void testScriptStatementsGoThroughAdmission() throws Exception {
+        QueryContext frank = QueryContext.builder().owner("frank").build();
+
+        ScriptResponse script = queryExecutionService.executeScript("""
+                CREATE TABLE Tag (id INT PRIMARY KEY);
+                INSERT INTO Tag VALUES (1);
+                SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b, SYSTEM_RANGE(1, 100000) c
+                """, frank);
+        assertFalse(script.isSuccess());
+        assertEquals(3, script.getResults().size());
+        assertEquals("REJECTED", script.getResults().get(2).getLimitHit());
+        // The CREATE committed on its own; only the insert after it was undone
+        assertTrue(script.getMessage().startsWith(
+                "Statement 3 failed; statement 1 stays applied because schema changes commit at once, "
+                        + "statement 2 was rolled back"), script.getMessage());
+        assertEquals(List.of(List.of("0")), queryExecutionService.executeQuery("SELECT COUNT(*) FROM Tag", frank).getRows());
+
+        queryExecutionService.resetSandbox("frank");
+    }
+
+    @Test
+    void testAdmissionRejectsHugeJoins() throws Exception {
+        // A small run of the same shape must not admit the large one
+        assertTrue(queryExecutionService.executeQuery(
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 10) a, SYSTEM_RANGE(1, 10) b, SYSTEM_RANGE(1, 10) c").isSuccess());
+
+        QueryResponse response = queryExecutionService.executeQuery(
+                "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b, SYSTEM_RANGE(1, 100000) c");
+        assertFalse(response.isSuccess());
+        assertEquals("REJECTED", response.getLimitHit());
+
+        // Primary key lookups are admitted
+        assertTrue(queryExecutionService.executeQuery("SELECT * FROM students s JOIN departments d ON s.department_id = d.id")
+                .isSuccess());
+    }
+
+    @Test
+    void testAdmissionCannotBeSkippedWithALeadingStatement() throws Exception {
+        String huge = "SELECT COUNT(*) FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b, SYSTEM_RANGE(1, 100000) c";
+
+        // Only the cheap first statement would have been explained; now nothing runs
+        QueryResponse response = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> queryExecutionService.executeQuery("SELECT 1; " + huge));
+        assertFalse(response.isSuccess());
+        assertNull(response.getRows());
+
+        // As a script, each statement is admitted on its own
+        ScriptResponse script = queryExecutionService.executeScript("SELECT 1; " + huge, QueryContext.shared());
+        assertEquals(2, script.getResults().size());
+        assertEquals("REJECTED", script.getResults().get(1).getLimitHit());
+    }
 }
@@ -0,0 +1,104 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.config.RateLimitConfig;
+import com.leetquery.backend.filter.RateLimitingFilter;
+import com.leetquery.backend.security.UserPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+class RateLimitingFilterTest {
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private RateLimitingFilter rateLimitingFilter;
+
+    @Autowired
+    private RateLimitConfig rateLimitConfig;
+
+    @Test
+    void testTiersAreCountedSeparately() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext)
+                .addFilters(rateLimitingFilter)
+                .build();
+        RequestPostProcessor client = from("203.0.113.7");
+
+        for (int i = 0; i < RateLimitConfig.STRICT_REQUESTS_PER_MINUTE; i++) {
+            mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(client))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(client))
+                .andExpect(status().isTooManyRequests());
+
+        // Catalog reads and other clients have buckets of their own
+        mockMvc.perform(get("/api/stages").contextPath("/api").with(client))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(from("203.0.113.8")))
+                .andExpect(status().isOk());
+        assertTrue(rateLimitConfig.bucketCount() >= 3);
+    }
+
+    @Test
+    void testAnonymousClientsCannotPickTheirKey() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext)
+                .addFilters(rateLimitingFilter)
+                .build();
+        RequestPostProcessor client = from("203.0.113.20");
+
+        for (int i = 0; i <= RateLimitConfig.STRICT_REQUESTS_PER_MINUTE; i++) {
+            String spoofed = "198.51.100." + i;
+            mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(client)
+                            .header("X-Forwarded-For", spoofed).header("X-Real-IP", spoofed))
+                    .andExpect(i < RateLimitConfig.STRICT_REQUESTS_PER_MINUTE
+                            ? status().isOk() : status().isTooManyRequests());
+        }
+    }
+
+    @Test
+    void testSignedInUsersAreKeyedByUserId() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext)
+                .addFilters(rateLimitingFilter)
+                .build();
+        UserPrincipal user = new UserPrincipal(7_301L, "limited@example.com", "limited", "", true, true, List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        try {
+            // One bucket however many addresses the user comes from
+            for (int i = 0; i < RateLimitConfig.STRICT_REQUESTS_PER_MINUTE; i++) {
+                mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(from("203.0.113." + (30 + i))))
+                        .andExpect(status().isOk());
+            }
+            mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(from("203.0.113.29")))
+                    .andExpect(status().isTooManyRequests());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        // Anonymous requests from one of those addresses still have their own bucket
+        mockMvc.perform(post("/api/auth/logout").contextPath("/api").with(from("203.0.113.30")))
+                .andExpect(status().isOk());
+    }
+
+    private static RequestPostProcessor from(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
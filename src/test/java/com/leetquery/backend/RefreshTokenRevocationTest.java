@@ -0,0 +1,102 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.dto.AuthResponse;
+import com.leetquery.backend.exception.UnauthorizedException;
+import com.leetquery.backend.model.User;
+import com.leetquery.backend.repository.UserRepository;
+import com.leetquery.backend.security.JwtAuthenticationFilter;
+import com.leetquery.backend.security.JwtTokenProvider;
+import com.leetquery.backend.security.RefreshTokenRevocations;
+import com.leetquery.backend.service.AuthenticationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RefreshTokenRevocationTest {
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private RefreshTokenRevocations refreshTokenRevocations;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.findByUsername("refresh_user").ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void testRefreshTokensRotateAndRevoke() {
+        User user = new User();
+        user.setUsername("refresh_user");
+        user.setEmail("refresh_user@example.com");
+        user.setPassword("hash");
+        userRepository.save(user);
+
+        String first = jwtTokenProvider.generateRefreshToken("refresh_user");
+        AuthResponse rotated = authenticationService.refreshToken(first);
+        assertEquals("refresh_user", rotated.getUser().getUsername());
+        assertNotEquals(first, rotated.getRefreshToken());
+        assertThrows(UnauthorizedException.class, () -> authenticationService.refreshToken(first));
+
+        authenticationService.logout(rotated.getRefreshToken());
+        assertThrows(UnauthorizedException.class,
+                () -> authenticationService.refreshToken(rotated.getRefreshToken()));
+
+        // Access tokens are not refresh tokens, and tokens without an id cannot be rotated
+        assertThrows(UnauthorizedException.class,
+                () -> authenticationService.refreshToken(jwtTokenProvider.generateToken("refresh_user")));
+
+        refreshTokenRevocations.flush();
+        String jti = jwtTokenProvider.verifyRefreshToken(first).getId();
+        assertTrue(refreshTokenRevocations.isRevoked(jti));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM revoked_refresh_tokens WHERE jti = ?", Integer.class, jti));
+    }
+
+    @Test
+    void testRefreshTokensAreNotBearerTokens() throws Exception {
+        User user = new User();
+        user.setUsername("refresh_user");
+        user.setEmail("refresh_user@example.com");
+        user.setPassword("hash");
+        userRepository.save(user);
+
+        String refresh = jwtTokenProvider.generateRefreshToken("refresh_user");
+        authenticationService.logout(refresh);
+        assertNull(authenticate(refresh));
+        assertNull(authenticate(jwtTokenProvider.generateRefreshToken("refresh_user")));
+        assertNotNull(authenticate(jwtTokenProvider.generateToken("refresh_user")));
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/progress");
+        request.addHeader("Authorization", "Bearer " + token);
+        jwtAuthenticationFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
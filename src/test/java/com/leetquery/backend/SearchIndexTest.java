@@ -0,0 +1,78 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.model.Challenge;
+import com.leetquery.backend.model.SearchHit;
+import com.leetquery.backend.model.Stage;
+import com.leetquery.backend.service.CatalogService;
+import com.leetquery.backend.service.SearchIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SearchIndexTest {
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private CatalogService catalogService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testPrefixSearchMatchesEveryWord() {
+        // Challenges with a word starting with "tab" in their title or description
+        Pattern prefix = Pattern.compile("(?s)(^|.*[^\\p{L}\\p{N}])tab.*");
+        Set<Long> expected = catalogService.snapshot().getChallenges(0).stream()
+                .filter(challenge -> prefix.matcher((challenge.getStageTitle() + " " + challenge.getDescription())
+                        .toLowerCase(Locale.ROOT)).matches())
+                .map(Challenge::getId)
+                .collect(Collectors.toSet());
+        assertFalse(expected.isEmpty());
+
+        List<SearchHit> hits = searchIndex.search("TAB", SearchIndex.CHALLENGE, 100);
+        assertEquals(expected, hits.stream().map(SearchHit::getId).collect(Collectors.toSet()));
+        for (int i = 1; i < hits.size(); i++) {
+            assertTrue(hits.get(i - 1).getScore() >= hits.get(i).getScore());
+        }
+
+        // Every word must match
+        List<SearchHit> both = searchIndex.search("tab stud", SearchIndex.CHALLENGE, 100);
+        assertFalse(both.isEmpty());
+        assertTrue(both.size() <= hits.size());
+        assertTrue(searchIndex.search("table zzzunknownzzz", null, 100).isEmpty());
+        assertTrue(searchIndex.search("  ,; ", null, 100).isEmpty());
+    }
+
+    @Test
+    void testIndexFollowsCatalogRefresh() {
+        Stage stage = catalogService.snapshot().getStages().get(0);
+        jdbcTemplate.update("INSERT INTO problems (stage_id, title, description, expected_query) VALUES (?, ?, ?, ?)",
+                stage.getId(), "Quokka census", "Count every quokka_sighting per island", "SELECT 1");
+        try {
+            assertTrue(searchIndex.search("quokka", null, 10).isEmpty());
+            catalogService.refresh();
+
+            List<SearchHit> hits = searchIndex.search("quok sighting", null, 10);
+            assertEquals(1, hits.size());
+            assertEquals(SearchIndex.PROBLEM, hits.get(0).getType());
+            assertEquals("Quokka census", hits.get(0).getTitle());
+            assertEquals(stage.getId(), hits.get(0).getStageId());
+        } finally {
+            jdbcTemplate.update("DELETE FROM problems WHERE title = 'Quokka census'");
+            catalogService.refresh();
+        }
+        assertTrue(searchIndex.search("quokka", null, 10).isEmpty());
+    }
+}
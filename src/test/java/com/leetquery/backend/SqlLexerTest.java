@@ -0,0 +1,89 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.util.SqlLexer;
+import com.leetquery.backend.util.SqlStatement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlLexerTest {
+
+    @Test
+    void testClassifiesCommentsCtesAndParentheses() {
+        assertEquals("SELECT", SqlLexer.analyze("-- list students\n/* all */ SELECT * FROM students").getKind());
+        assertEquals("SELECT", SqlLexer.analyze("(SELECT id FROM students) UNION (SELECT id FROM courses)").getKind());
+        assertEquals("DESCRIBE", SqlLexer.analyze("desc students").getKind());
+
+        SqlStatement cte = SqlLexer.analyze(
+                "WITH top AS (SELECT * FROM students WHERE gpa > 3.5), d(x) AS (SELECT id FROM departments) " +
+                "SELECT name FROM top JOIN d ON top.department_id = d.x");
+        assertEquals("SELECT", cte.getKind());
+        assertEquals(Set.of("students", "departments"), cte.getTables());
+    }
+
+    @Test
+    void testNormalizesAndFingerprints() {
+        SqlStatement a = SqlLexer.analyze("SELECT  name FROM Students\n WHERE gpa > 3.5 AND name = 'Ann';");
+        SqlStatement b = SqlLexer.analyze("select name from students where gpa>3.5 and name='Ann' -- trailing");
+        SqlStatement c = SqlLexer.analyze("select name from students where gpa > 2 and name = 'Bob'");
+
+        assertEquals(a.getNormalized(), b.getNormalized());
+        assertNotEquals(a.getNormalized(), c.getNormalized());
+        assertEquals(a.getFingerprint(), c.getFingerprint());
+        assertEquals(Set.of("students"), a.getTables());
+    }
+
+    @Test
+    void testCollectsTablesAndFunctions() {
+        SqlStatement statement = SqlLexer.analyze(
+                "SELECT s.name, COUNT(*), CURRENT_DATE FROM students s, PUBLIC.enrollments e " +
+                "LEFT JOIN \"Courses\" c ON c.id = e.course_id WHERE s.id IN (SELECT student_id FROM Student)");
+        assertEquals(Set.of("students", "enrollments", "courses", "student"), statement.getTables());
+        assertTrue(statement.getFunctions().containsAll(Set.of("count", "current_date")));
+
+        assertEquals(Set.of("student"), SqlLexer.analyze("DROP TABLE IF EXISTS Student").getTables());
+        assertEquals(Set.of("t", "u"), SqlLexer.analyze("INSERT INTO t (a) SELECT a FROM u").getTables());
+    }
+
+    @Test
+    void testSplitsStatementsOutsideQuotesAndComments() {
+        String script = "INSERT INTO t VALUES ('a;b'); -- done; really\nUPDATE t SET a = 'c';;\n SELECT 1";
+        List<SqlStatement> statements = SqlLexer.lex(script);
+
+        assertEquals(3, statements.size());
+        assertEquals("INSERT INTO t VALUES ('a;b')", statements.get(0).getSql());
+        assertEquals("UPDATE", statements.get(1).getKind());
+        assertEquals("SELECT 1", statements.get(2).getSql());
+        assertEquals(script.indexOf("SELECT 1"), statements.get(2).getStart());
+    }
+
+    @Test
+    void testDollarQuotedStringsAreLiterals() {
+        SqlStatement upper = SqlLexer.analyze("SELECT $$Ann; DROP TABLE t$$ FROM students WHERE name=$$X$$");
+        SqlStatement lower = SqlLexer.analyze("SELECT $$ann; drop table t$$ FROM students WHERE name=$$x$$");
+
+        assertEquals(1, SqlLexer.lex("SELECT $$Ann; DROP TABLE t$$ FROM students").size());
+        assertEquals(Set.of("students"), upper.getTables());
+        // Literal text keeps its case, so results for different strings never share a cache key
+        assertNotEquals(upper.getNormalized(), lower.getNormalized());
+        assertEquals(upper.getFingerprint(), lower.getFingerprint());
+        assertEquals(2, SqlLexer.lex("SELECT a$$b$$; SELECT 1").size());
+    }
+
+    @Test
+    void testReadsWithHiddenWritesAreNotPlainReads() {
+        SqlStatement delta = SqlLexer.analyze("SELECT * FROM OLD TABLE (DELETE FROM students WHERE id = 2)");
+        SqlStatement explain = SqlLexer.analyze("EXPLAIN ANALYZE DELETE FROM students WHERE id = 1");
+
+        assertEquals("SELECT", delta.getKind());
+        assertEquals(Set.of("students"), delta.getTables());
+        assertFalse(delta.isPlainRead());
+        assertFalse(explain.isPlainRead());
+        assertFalse(SqlLexer.analyze("select * from final table (update students set gpa = 1)").isPlainRead());
+        assertTrue(SqlLexer.analyze("EXPLAIN SELECT * FROM students").isPlainRead());
+        assertTrue(SqlLexer.analyze("SELECT old, new FROM students").isPlainRead());
+    }
+}
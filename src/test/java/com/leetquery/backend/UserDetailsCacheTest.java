@@ -0,0 +1,53 @@
+package com.leetquery.backend;
+
+import com.leetquery.backend.model.User;
+import com.leetquery.backend.repository.UserRepository;
+import com.leetquery.backend.security.CustomUserDetailsService;
+import com.leetquery.backend.security.UserPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class UserDetailsCacheTest {
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.findByUsername("cached_user").ifPresent(userRepository::delete);
+    }
+
+    @Test
+    void testPrincipalIsCachedUntilTheUserChanges() {
+        User user = new User();
+        user.setUsername("cached_user");
+        user.setEmail("cached_user@example.com");
+        user.setPassword("hash-1");
+        user = userRepository.save(user);
+
+        UserPrincipal first = userDetailsService.loadUserForToken("cached_user");
+        assertSame(first, userDetailsService.loadUserForToken("cached_user"));
+        assertEquals(user.getId(), userDetailsService.loadUserForToken("cached_user@example.com").getId());
+
+        user.setPassword("hash-2");
+        user = userRepository.save(user);
+        UserPrincipal reloaded = userDetailsService.loadUserForToken("cached_user");
+        assertNotSame(first, reloaded);
+        assertEquals("hash-2", reloaded.getPassword());
+
+        user.setIsAccountLocked(true);
+        userRepository.save(user);
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserForToken("cached_user"));
+        assertThrows(UsernameNotFoundException.class,
+                () -> userDetailsService.loadUserForToken("cached_user@example.com"));
+    }
+}